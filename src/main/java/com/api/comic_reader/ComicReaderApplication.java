@@ -2,8 +2,10 @@ package com.api.comic_reader;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class ComicReaderApplication {
 
     public static void main(String[] args) {
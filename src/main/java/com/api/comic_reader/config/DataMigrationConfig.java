@@ -0,0 +1,130 @@
+package com.api.comic_reader.config;
+
+import java.util.List;
+
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.api.comic_reader.repositories.ChapterImageRepository;
+import com.api.comic_reader.repositories.ComicRepository;
+import com.api.comic_reader.repositories.ComicThumbnailRepository;
+import com.api.comic_reader.repositories.RatingRepository;
+import com.api.comic_reader.services.RatingService;
+import com.api.comic_reader.utils.TextNormalizationUtil;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class DataMigrationConfig {
+    private final ComicRepository comicRepository;
+
+    private final ComicThumbnailRepository comicThumbnailRepository;
+
+    private final ChapterImageRepository chapterImageRepository;
+
+    private final RatingRepository ratingRepository;
+
+    private final RatingService ratingService;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // This method migrates the data of existing databases after Hibernate has updated the schema.
+    // Every step only touches rows that have not been migrated yet, so it is safe to run on each startup.
+    @Bean
+    ApplicationRunner dataMigrationRunner() {
+        return args -> {
+            // Fill in the last chapter date of comics created before the column existed
+            int comicCount = comicRepository.backfillLastChapterAt();
+            if (comicCount > 0) {
+                log.info("Backfilled last chapter date of {} comics", comicCount);
+            }
+
+            // Move the thumbnails out of the comic table, then drop the legacy column
+            if (columnExists("comic", "thumbnail_image")) {
+                int thumbnailCount = transactionTemplate.execute(status -> {
+                    int copied = comicThumbnailRepository.copyLegacyThumbnails();
+                    jdbcTemplate.execute("ALTER TABLE comic DROP COLUMN thumbnail_image");
+                    return copied;
+                });
+                log.info("Moved {} comic thumbnails to the comic_thumbnail table", thumbnailCount);
+            }
+
+            // Fix the duplicate image orders left by concurrent uploads, then enforce unique orders
+            if (!indexExists("uk_chapter_image_chapter_order")) {
+                int renumberedCount = transactionTemplate.execute(status -> {
+                    int renumbered = chapterImageRepository.renumberDuplicateOrders();
+                    jdbcTemplate.execute("CREATE UNIQUE INDEX uk_chapter_image_chapter_order "
+                            + "ON chapter_image (chapter_id, image_order)");
+                    return renumbered;
+                });
+                log.info("Renumbered {} chapter images with duplicate orders", renumberedCount);
+            }
+
+            // Fill in the normalized name and author of comics created before these columns existed
+            int normalizedCount = backfillNormalizedComicText();
+            if (normalizedCount > 0) {
+                log.info("Backfilled normalized name and author of {} comics", normalizedCount);
+            }
+
+            // Remove the duplicate ratings left by concurrent requests, then enforce one rating per user and comic
+            if (!indexExists("uk_rating_user_comic")) {
+                int duplicateCount = transactionTemplate.execute(status -> {
+                    int deleted = ratingRepository.deleteDuplicateRatings();
+                    jdbcTemplate.execute("CREATE UNIQUE INDEX uk_rating_user_comic ON rating (user_id, comic_id)");
+                    return deleted;
+                });
+                log.info("Deleted {} duplicate ratings", duplicateCount);
+            }
+
+            // Compute the rating stats of comics rated before the stats were kept
+            ratingService.reconcileRatingStats();
+        };
+    }
+
+    // This method computes the normalized name and author of the comics that do not have them yet.
+    // The normalization is done by TextNormalizationUtil rather than SQL, so it is the same as for new comics.
+    // It returns the number of updated comics.
+    private int backfillNormalizedComicText() {
+        List<Object[]> batch = jdbcTemplate.query(
+                "SELECT id, name, author FROM comic WHERE normalized_name IS NULL OR normalized_author IS NULL",
+                (resultSet, rowNumber) -> new Object[] {
+                    TextNormalizationUtil.normalize(resultSet.getString("name")),
+                    TextNormalizationUtil.normalize(resultSet.getString("author")),
+                    resultSet.getLong("id")
+                });
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        jdbcTemplate.batchUpdate("UPDATE comic SET normalized_name = ?, normalized_author = ? WHERE id = ?", batch);
+        return batch.size();
+    }
+
+    // This method checks whether an index exists in the current schema.
+    private boolean indexExists(String indexName) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_indexes WHERE schemaname = current_schema() AND indexname = ?",
+                Integer.class,
+                indexName);
+        return count != null && count > 0;
+    }
+
+    // This method checks whether a column exists in a table of the current schema.
+    private boolean columnExists(String tableName, String columnName) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns "
+                        + "WHERE table_schema = current_schema() AND table_name = ? AND column_name = ?",
+                Integer.class,
+                tableName,
+                columnName);
+        return count != null && count > 0;
+    }
+}
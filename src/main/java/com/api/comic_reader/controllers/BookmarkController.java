@@ -32,6 +32,33 @@ public class BookmarkController {
                 .body(ApiResponse.builder().message(message).result(null).build());
     }
 
+    // This method handles the POST request to add a comic to the bookmarks.
+    // If the comic is already bookmarked, it stays bookmarked.
+    @PostMapping("/addBookmark")
+    public ResponseEntity<ApiResponse> addBookmark(@RequestBody BookmarkRequest bookmarkRequest) throws AppException {
+        bookmarkService.addBookmark(bookmarkRequest.getComicId());
+
+        return ResponseEntity.ok()
+                .body(ApiResponse.builder()
+                        .message("Bookmark comic successfully")
+                        .result(null)
+                        .build());
+    }
+
+    // This method handles the POST request to remove a comic from the bookmarks.
+    // If the comic is not bookmarked, nothing changes.
+    @PostMapping("/removeBookmark")
+    public ResponseEntity<ApiResponse> removeBookmark(@RequestBody BookmarkRequest bookmarkRequest)
+            throws AppException {
+        bookmarkService.removeBookmark(bookmarkRequest.getComicId());
+
+        return ResponseEntity.ok()
+                .body(ApiResponse.builder()
+                        .message("Unbookmark comic successfully")
+                        .result(null)
+                        .build());
+    }
+
     // This method handles the GET request to get all the bookmarks of the current user.
     @GetMapping("/getMyBookmarks")
     public ResponseEntity<ApiResponse> getMyBookmarks() {
@@ -2,15 +2,26 @@ package com.api.comic_reader.controllers;
 
 import java.util.List;
 
+import jakarta.servlet.http.HttpServletRequest;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.api.comic_reader.dtos.requests.ChapterRequest;
 import com.api.comic_reader.dtos.responses.ApiResponse;
+import com.api.comic_reader.dtos.responses.ChapterImportResponse;
 import com.api.comic_reader.dtos.responses.ChapterResponse;
+import com.api.comic_reader.services.ChapterExportService;
 import com.api.comic_reader.services.ChapterImageService;
+import com.api.comic_reader.services.ChapterImportService;
 import com.api.comic_reader.services.ChapterService;
+import com.api.comic_reader.storage.MultipartBundle;
+import com.api.comic_reader.storage.StoredZipArchive;
+import com.api.comic_reader.utils.ImageResponseUtil;
 
 import lombok.RequiredArgsConstructor;
 
@@ -26,6 +37,12 @@ public class ChapterController {
     @Autowired
     private final ChapterImageService chapterImageService;
 
+    @Autowired
+    private final ChapterImportService chapterImportService;
+
+    @Autowired
+    private final ChapterExportService chapterExportService;
+
     // This method handles the POST request to insert a new chapter.
     @PostMapping("/insertChapter")
     public ResponseEntity<ApiResponse> insertChapter(@RequestBody ChapterRequest newChapter) {
@@ -37,6 +54,24 @@ public class ChapterController {
                         .build());
     }
 
+    // This method handles the POST request to import chapters from a CBZ/ZIP archive.
+    // The chapter number and title are only used for an archive that holds a single chapter without a manifest.
+    @PostMapping("/importChapters/{comicId}")
+    public ResponseEntity<ApiResponse> importChapters(
+            @PathVariable Long comicId,
+            @RequestParam("archive") MultipartFile archive,
+            @RequestParam(value = "chapterNumber", required = false) Long chapterNumber,
+            @RequestParam(value = "title", required = false) String title) {
+        List<ChapterImportResponse> chapters =
+                chapterImportService.importChapters(comicId, archive, chapterNumber, title);
+
+        return ResponseEntity.ok()
+                .body(ApiResponse.builder()
+                        .message("Import chapters successfully")
+                        .result(chapters)
+                        .build());
+    }
+
     // This method handles the GET request to get all images of a chapter.
     @GetMapping("/getChapter/{chapterId}")
     public ResponseEntity<ApiResponse> getChapterImages(@PathVariable Long chapterId) {
@@ -49,6 +84,55 @@ public class ChapterController {
                         .build());
     }
 
+    // This method handles the GET request to get the pages of a chapter in one multipart/mixed response.
+    // The window of pages is optional: it starts at the from page and holds at most count pages.
+    // The bundle is streamed while its pages are read, and supports conditional and range requests.
+    @GetMapping("/bundle/{chapterId}")
+    public ResponseEntity<StreamingResponseBody> getChapterBundle(
+            @PathVariable Long chapterId,
+            @RequestParam(value = "from", required = false) Integer fromPage,
+            @RequestParam(value = "count", required = false) Integer pageCount,
+            HttpServletRequest request) {
+        MultipartBundle bundle = chapterImageService.getChapterBundle(chapterId, fromPage, pageCount);
+
+        return ImageResponseUtil.toBundleResponse(
+                chapterImageService.getBundleMetadata(bundle), request, CacheControl.noCache(), bundle::write);
+    }
+
+    // This method handles the GET request to download a chapter as a CBZ archive, for offline reading.
+    // The archive is streamed while its pages are read, and supports conditional and range requests, so interrupted
+    // downloads can be resumed.
+    @GetMapping("/download/{chapterId}")
+    public ResponseEntity<StreamingResponseBody> downloadChapter(
+            @PathVariable Long chapterId, HttpServletRequest request) {
+        StoredZipArchive archive = chapterExportService.exportChapter(chapterId);
+
+        return ImageResponseUtil.toDownloadResponse(
+                chapterExportService.getArchiveMetadata(archive),
+                "chapter-" + chapterId + ".cbz",
+                request,
+                CacheControl.noCache(),
+                archive::write);
+    }
+
+    // This method handles the GET request to download the chapters of a comic as a CBZ archive, with one folder per
+    // chapter. The range of chapter numbers is optional on both ends.
+    @GetMapping("/downloadChapters/{comicId}")
+    public ResponseEntity<StreamingResponseBody> downloadChapters(
+            @PathVariable Long comicId,
+            @RequestParam(value = "from", required = false) Long fromNumber,
+            @RequestParam(value = "to", required = false) Long toNumber,
+            HttpServletRequest request) {
+        StoredZipArchive archive = chapterExportService.exportChapters(comicId, fromNumber, toNumber);
+
+        return ImageResponseUtil.toDownloadResponse(
+                chapterExportService.getArchiveMetadata(archive),
+                "comic-" + comicId + ".cbz",
+                request,
+                CacheControl.noCache(),
+                archive::write);
+    }
+
     // This method handles the GET request to get all chapters of a comic.
     @GetMapping("/getComicChapters/{id}")
     public ResponseEntity<ApiResponse> getComicChapters(@PathVariable Long id) {
@@ -1,17 +1,26 @@
 package com.api.comic_reader.controllers;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.MediaType;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.api.comic_reader.dtos.requests.ChapterImageRequest;
 import com.api.comic_reader.dtos.responses.ApiResponse;
+import com.api.comic_reader.dtos.responses.ChapterImageUploadResponse;
+import com.api.comic_reader.dtos.responses.ImageCacheStatsResponse;
 import com.api.comic_reader.exception.AppException;
+import com.api.comic_reader.repositories.projections.ImageMetadata;
 import com.api.comic_reader.services.ChapterImageService;
+import com.api.comic_reader.services.ImageVariantService;
+import com.api.comic_reader.utils.ImageResponseUtil;
 
 import lombok.RequiredArgsConstructor;
 
@@ -20,35 +29,69 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 @CrossOrigin(origins = "*", allowedHeaders = "*")
 public class ChapterImageController {
+    // How long the original may be cached for a width whose variant is not generated yet
+    private static final long PENDING_VARIANT_MAX_AGE_SECONDS = 60;
+
     @Autowired
     private final ChapterImageService chapterImageService;
 
     // This method handles the POST request to insert images for a chapter. It accepts a list of images and a chapter
     // ID.
+    // The images are inserted together, in the order of the list, and the result of each image is returned.
     @PostMapping("/insertChapterImages/{chapterId}")
     public ResponseEntity<ApiResponse> insertChapterImage(
             @PathVariable Long chapterId, @RequestParam("imageData") List<MultipartFile> imageDataList)
             throws AppException {
-        // Loop through each image file in the list and add it to the system
-        for (MultipartFile imageData : imageDataList) {
-            chapterImageService.insertChapterImages(ChapterImageRequest.builder()
-                    .chapterId(chapterId)
-                    .imageData(imageData)
-                    .build());
-        }
+        List<ChapterImageUploadResponse> results = chapterImageService.insertChapterImages(ChapterImageRequest.builder()
+                .chapterId(chapterId)
+                .imageDataList(imageDataList)
+                .build());
 
         return ResponseEntity.ok()
                 .body(ApiResponse.builder()
                         .message("Insert chapter images successfully")
-                        .result(null)
+                        .result(results)
                         .build());
     }
 
-    // This method handles the GET request to get an image by its ID. It returns the image as a byte array.
+    // This method handles the GET request to get an image by its ID. It streams the image to the client.
+    // It supports conditional requests (If-None-Match) and range requests (Range, If-Range).
+    // The data of an image never changes once uploaded, so clients may cache it for a year.
+    // A smaller variant is sent if the client asks for a width, with the w parameter (in CSS pixels) or client hints.
+    // While that variant is not generated yet, the original is sent with a short max-age instead, so the variant is
+    // fetched once it exists.
     @GetMapping("/{imageId}")
-    public ResponseEntity<byte[]> getImage(@PathVariable Long imageId) throws AppException {
-        byte[] image = chapterImageService.getImageFromImageId(imageId);
-        return ResponseEntity.ok().contentType(MediaType.IMAGE_JPEG).body(image);
+    public ResponseEntity<StreamingResponseBody> getImage(
+            @PathVariable Long imageId,
+            @RequestParam(value = "w", required = false) Integer width,
+            HttpServletRequest request)
+            throws AppException {
+        Integer requestedWidth = ImageResponseUtil.resolveRequestedWidth(request, width);
+        ImageVariantService.VariantSelection selection = chapterImageService.getImageMetadata(imageId, requestedWidth);
+        ImageMetadata metadata = selection.getMetadata();
+        CacheControl cacheControl = selection.isPending()
+                ? CacheControl.maxAge(PENDING_VARIANT_MAX_AGE_SECONDS, TimeUnit.SECONDS)
+                        .cachePublic()
+                : CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+
+        return ImageResponseUtil.toResponse(
+                metadata,
+                request,
+                cacheControl,
+                chapterImageService.getImageFile(metadata),
+                (offset, length, outputStream) ->
+                        chapterImageService.writeImageData(imageId, metadata, offset, length, outputStream));
+    }
+
+    // This method handles the GET request to get the hit, miss and eviction statistics of the image cache.
+    @GetMapping("/cacheStats")
+    public ResponseEntity<ApiResponse> getCacheStats() throws AppException {
+        ImageCacheStatsResponse stats = chapterImageService.getImageCacheStats();
+        return ResponseEntity.ok()
+                .body(ApiResponse.builder()
+                        .message("Get image cache statistics successfully")
+                        .result(stats)
+                        .build());
     }
 
     // This method handles the DELETE request to delete an image by its ID.
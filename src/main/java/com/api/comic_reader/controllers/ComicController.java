@@ -1,21 +1,26 @@
 package com.api.comic_reader.controllers;
 
-import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+
+import jakarta.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.MediaType;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.api.comic_reader.dtos.requests.ComicRequest;
 import com.api.comic_reader.dtos.responses.ApiResponse;
 import com.api.comic_reader.dtos.responses.ComicInformationResponse;
+import com.api.comic_reader.dtos.responses.ComicPageResponse;
 import com.api.comic_reader.dtos.responses.ComicResponse;
+import com.api.comic_reader.dtos.responses.ComicSuggestionResponse;
 import com.api.comic_reader.exception.AppException;
+import com.api.comic_reader.repositories.projections.ImageMetadata;
 import com.api.comic_reader.services.ComicService;
+import com.api.comic_reader.utils.ImageResponseUtil;
 
 import lombok.RequiredArgsConstructor;
 
@@ -40,14 +45,49 @@ public class ComicController {
                         .build());
     }
 
+    // This method handles the GET request to get one page of comics.
+    // The comics can be sorted by "id", "view" or "lastChapter" and filtered by their finished status.
+    // The nextCursor of a page is passed as the cursor to get the following page.
+    @GetMapping("/getComics")
+    public ResponseEntity<ApiResponse> getComics(
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestParam(value = "isFinished", required = false) Boolean isFinished,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size)
+            throws AppException {
+        // Fetch one page of comics using the comic service
+        ComicPageResponse comics = comicService.getComicsPage(sort, isFinished, cursor, size);
+
+        return ResponseEntity.ok()
+                .body(ApiResponse.builder()
+                        .message("Get comics successfully")
+                        .result(comics)
+                        .build());
+    }
+
+    // This method handles the GET request to get one page of the top rated comics.
+    // The comics are ranked by a Bayesian average of their ratings, so comics with few ratings do not dominate, and
+    // can be filtered by genre. The nextCursor of a page is passed as the cursor to get the following page.
+    @GetMapping("/getTopRatedComics")
+    public ResponseEntity<ApiResponse> getTopRatedComics(
+            @RequestParam(value = "genreId", required = false) Long genreId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size)
+            throws AppException {
+        ComicPageResponse comics = comicService.getTopRatedComicsPage(genreId, cursor, size);
+
+        return ResponseEntity.ok()
+                .body(ApiResponse.builder()
+                        .message("Get top rated comics successfully")
+                        .result(comics)
+                        .build());
+    }
+
     // This method handles the GET request to get all finished comics.
     @GetMapping("/getFinishedComics")
     public ResponseEntity<ApiResponse> getFinishedComics() {
-        // Fetch all comics using the comic service
-        List<ComicResponse> comics = comicService.getAllComics();
-        // Filter the comics to only include finished ones
-        List<ComicResponse> finishedComics =
-                comics.stream().filter(ComicResponse::isFinished).collect(Collectors.toList());
+        // Fetch the finished comics using the comic service
+        List<ComicResponse> finishedComics = comicService.getComicsByFinished(true);
 
         return ResponseEntity.ok()
                 .body(ApiResponse.builder()
@@ -59,11 +99,8 @@ public class ComicController {
     // This method handles the GET request to get all not finished comics.
     @GetMapping("/getNotFinishedComics")
     public ResponseEntity<ApiResponse> getNotFinishedComics() {
-        // Fetch all comics using the comic service
-        List<ComicResponse> comics = comicService.getAllComics();
-        // Filter the comics to only include not finished ones
-        List<ComicResponse> notFinishedComics =
-                comics.stream().filter(comic -> !comic.isFinished()).collect(Collectors.toList());
+        // Fetch the not finished comics using the comic service
+        List<ComicResponse> notFinishedComics = comicService.getComicsByFinished(false);
 
         return ResponseEntity.ok()
                 .body(ApiResponse.builder()
@@ -73,18 +110,11 @@ public class ComicController {
     }
 
     // This method handles the GET request to get the 6 last comics.
+    // The number of comics is configurable, 6 is the default.
     @GetMapping("/get6LastComics")
     public ResponseEntity<ApiResponse> get6LastComics() {
-        // Fetch all comics using the comic service
-        List<ComicResponse> comics = comicService.getAllComics();
-        // Filter and sort the comics to get the 6 last ones
-        List<ComicResponse> list6LastComics = comics.stream()
-                .filter(comic -> comic.getLastChapter() != null)
-                .sorted(Comparator.comparing(
-                        comic -> comic.getLastChapter().getCreatedAt(),
-                        Comparator.nullsLast(Comparator.reverseOrder())))
-                .limit(6)
-                .collect(Collectors.toList());
+        // Fetch the comics with the latest chapters using the comic service
+        List<ComicResponse> list6LastComics = comicService.getLatestComics();
 
         return ResponseEntity.ok()
                 .body(ApiResponse.builder()
@@ -94,16 +124,11 @@ public class ComicController {
     }
 
     // This method handles the GET request to get the 3 most viewed comics.
+    // The number of comics is configurable, 3 is the default.
     @GetMapping("/get3MostViewComics")
     public ResponseEntity<ApiResponse> get3MostViewComics() {
-        // Fetch all comics using the comic service
-        List<ComicResponse> comics = comicService.getAllComics();
-        // Filter and sort the comics to get the 3 most viewed ones
-        List<ComicResponse> list3MostViewComics = comics.stream()
-                .filter(comic -> comic.getLastChapter() != null)
-                .sorted(Comparator.comparing(ComicResponse::getView, Comparator.nullsLast(Comparator.reverseOrder())))
-                .limit(3)
-                .collect(Collectors.toList());
+        // Fetch the most viewed comics using the comic service
+        List<ComicResponse> list3MostViewComics = comicService.getMostViewedComics();
 
         return ResponseEntity.ok()
                 .body(ApiResponse.builder()
@@ -112,6 +137,20 @@ public class ComicController {
                         .build());
     }
 
+    // This method handles the GET request to get the trending comics, ranked by the chapter reads of the last 24 hours
+    // (window=24h, the default) or 7 days (window=7d), recent reads counting more.
+    @GetMapping("/trending")
+    public ResponseEntity<ApiResponse> getTrendingComics(
+            @RequestParam(value = "window", required = false) String window) throws AppException {
+        List<ComicResponse> comics = comicService.getTrendingComics(window);
+
+        return ResponseEntity.ok()
+                .body(ApiResponse.builder()
+                        .message("Get trending comics successfully")
+                        .result(comics)
+                        .build());
+    }
+
     // This method handles the POST request to insert a new comic.
     @PostMapping("/insertComic")
     public ResponseEntity<ApiResponse> insertComic(
@@ -137,12 +176,40 @@ public class ComicController {
     }
 
     // This method handles the GET request to get the thumbnail image of a comic.
+    // It streams the thumbnail to the client and supports conditional and range requests.
+    // The thumbnail can be replaced, so clients must revalidate their copy with its ETag.
+    // A smaller variant is sent if the client asks for a width, with the w parameter (in CSS pixels) or client hints.
     @GetMapping("/thumbnail/{comicId}")
-    public ResponseEntity<byte[]> getImage(@PathVariable Long comicId) throws AppException {
-        // Fetch the thumbnail image of the comic using the comic service
-        byte[] thumbnail = comicService.getThumbnailImage(comicId);
+    public ResponseEntity<StreamingResponseBody> getImage(
+            @PathVariable Long comicId,
+            @RequestParam(value = "w", required = false) Integer width,
+            HttpServletRequest request)
+            throws AppException {
+        // Fetch the metadata of the thumbnail using the comic service, the image data is streamed afterwards
+        Integer requestedWidth = ImageResponseUtil.resolveRequestedWidth(request, width);
+        ImageMetadata metadata = comicService.getThumbnailMetadata(comicId, requestedWidth);
+
+        return ImageResponseUtil.toResponse(
+                metadata,
+                request,
+                CacheControl.noCache(),
+                comicService.getThumbnailFile(metadata),
+                (offset, length, outputStream) ->
+                        comicService.writeThumbnailData(comicId, metadata, offset, length, outputStream));
+    }
 
-        return ResponseEntity.ok().contentType(MediaType.IMAGE_JPEG).body(thumbnail);
+    // This method handles the GET request to suggest comics while the user types.
+    // It returns the IDs and names of the most viewed comics whose name or author, or one of their words, starts
+    // with the query. It accepts queries of any length and is answered from memory.
+    @GetMapping("/suggest")
+    public ResponseEntity<ApiResponse> suggestComics(@RequestParam(value = "q", defaultValue = "") String query) {
+        List<ComicSuggestionResponse> suggestions = comicService.suggestComics(query);
+
+        return ResponseEntity.ok()
+                .body(ApiResponse.builder()
+                        .message("Suggest comics successfully")
+                        .result(suggestions)
+                        .build());
     }
 
     // This method handles the GET request to search comics by a keyword.
@@ -158,6 +225,20 @@ public class ComicController {
                         .build());
     }
 
+    // This method handles the GET request to search comics by a keyword, with their number per genre and per
+    // finished status.
+    // The comics are returned as a single page.
+    @GetMapping("/searchComicsWithFacets/{keyword}")
+    public ResponseEntity<ApiResponse> searchComicsWithFacets(@PathVariable String keyword) {
+        ComicPageResponse comics = comicService.searchComicsWithFacets(keyword);
+
+        return ResponseEntity.ok()
+                .body(ApiResponse.builder()
+                        .message("Search comics successfully")
+                        .result(comics)
+                        .build());
+    }
+
     // This method handles the GET request to get the information of a comic.
     @GetMapping("/getComicInformation/{comicId}")
     public ResponseEntity<ApiResponse> getComicInformation(@PathVariable Long comicId) {
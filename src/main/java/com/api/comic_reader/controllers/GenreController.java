@@ -10,6 +10,7 @@ import com.api.comic_reader.dtos.requests.AddGenresToComicRequest;
 import com.api.comic_reader.dtos.requests.AddNewGenreRequest;
 import com.api.comic_reader.dtos.requests.FilterGenresRequest;
 import com.api.comic_reader.dtos.responses.ApiResponse;
+import com.api.comic_reader.dtos.responses.ComicPageResponse;
 import com.api.comic_reader.dtos.responses.ComicResponse;
 import com.api.comic_reader.dtos.responses.GenreResponse;
 import com.api.comic_reader.services.GenreService;
@@ -46,6 +47,20 @@ public class GenreController {
                         .build());
     }
 
+    // This method handles the POST request to fetch one page of comics filtered by genres and finished status.
+    // The comics must have all of genreIds, at least one of anyGenreIds and none of excludedGenreIds.
+    // The nextCursor of a page is passed as the cursor to get the following page.
+    // With includeFacets, the page also has the number of all matching comics per genre and per finished status.
+    @PostMapping("/filterComics")
+    public ResponseEntity<ApiResponse> filterComics(@RequestBody FilterGenresRequest filterRequest) {
+        ComicPageResponse comics = genreService.filterComics(filterRequest);
+        return ResponseEntity.ok()
+                .body(ApiResponse.builder()
+                        .message("Filter comics successfully")
+                        .result(comics)
+                        .build());
+    }
+
     // This method handles the POST request to add a new genre
     @PostMapping("/addNewGenre")
     public ResponseEntity<ApiResponse> addNewGenre(@RequestBody AddNewGenreRequest newGenre) {
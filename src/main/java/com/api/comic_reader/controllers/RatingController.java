@@ -6,6 +6,7 @@ import org.springframework.web.bind.annotation.*;
 
 import com.api.comic_reader.dtos.requests.RatingRequest;
 import com.api.comic_reader.dtos.responses.ApiResponse;
+import com.api.comic_reader.dtos.responses.ComicRatingResponse;
 import com.api.comic_reader.exception.AppException;
 import com.api.comic_reader.services.RatingService;
 
@@ -42,4 +43,17 @@ public class RatingController {
                         .result(averageRating)
                         .build());
     }
+
+    // This method handles the GET request to fetch the average rating of a comic, its number of ratings and the
+    // number of ratings of each score
+    @GetMapping("/getComicRating/{comicId}")
+    public ResponseEntity<ApiResponse> getComicRating(@PathVariable Long comicId) {
+        ComicRatingResponse rating = ratingService.getComicRating(comicId);
+
+        return ResponseEntity.ok()
+                .body(ApiResponse.builder()
+                        .message("Get comic rating successfully")
+                        .result(rating)
+                        .build());
+    }
 }
@@ -1,5 +1,7 @@
 package com.api.comic_reader.dtos.requests;
 
+import java.util.List;
+
 import org.springframework.web.multipart.MultipartFile;
 
 import lombok.*;
@@ -11,5 +13,5 @@ import lombok.*;
 @Builder
 public class ChapterImageRequest {
     private Long chapterId;
-    private MultipartFile imageData;
+    private List<MultipartFile> imageDataList;
 }
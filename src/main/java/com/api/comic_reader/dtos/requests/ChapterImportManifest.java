@@ -0,0 +1,27 @@
+package com.api.comic_reader.dtos.requests;
+
+import java.util.List;
+
+import lombok.*;
+
+// The manifest.json file of a multi-chapter archive.
+// Each chapter is a top-level folder of the archive, the folders that are not listed are numbered from their name.
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ChapterImportManifest {
+    private List<Chapter> chapters;
+
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @Builder
+    public static class Chapter {
+        private String folder;
+        private Long chapterNumber;
+        private String title;
+    }
+}
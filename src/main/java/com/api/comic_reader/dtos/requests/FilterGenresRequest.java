@@ -10,5 +10,22 @@ import lombok.*;
 @NoArgsConstructor
 @Builder
 public class FilterGenresRequest {
+    // The comics must have all of these genres
     private List<Long> genreIds;
+
+    // The comics must have at least one of these genres, if any
+    private List<Long> anyGenreIds;
+
+    // The comics must have none of these genres
+    private List<Long> excludedGenreIds;
+
+    // The comics must have this finished status, if not null
+    private Boolean isFinished;
+
+    // The nextCursor of the previous page and the page size, only used by the paged filter
+    private String cursor;
+    private Integer size;
+
+    // Whether the paged filter also returns the facet counts of the matching comics
+    private Boolean includeFacets;
 }
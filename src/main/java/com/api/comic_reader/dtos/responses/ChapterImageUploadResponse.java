@@ -0,0 +1,16 @@
+package com.api.comic_reader.dtos.responses;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@Builder
+@NoArgsConstructor
+public class ChapterImageUploadResponse {
+    private String fileName;
+    private boolean success;
+    private Long imageId;
+    private Long imageOrder;
+    private String message;
+}
@@ -0,0 +1,18 @@
+package com.api.comic_reader.dtos.responses;
+
+import java.util.List;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@Builder
+@NoArgsConstructor
+public class ChapterImportResponse {
+    private Long chapterId;
+    private Long chapterNumber;
+    private String title;
+    private int pageCount;
+    private List<String> skippedFiles;
+}
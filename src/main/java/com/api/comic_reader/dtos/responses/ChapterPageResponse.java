@@ -0,0 +1,18 @@
+package com.api.comic_reader.dtos.responses;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@Builder
+@NoArgsConstructor
+public class ChapterPageResponse {
+    private String url;
+    private Integer width;
+    private Integer height;
+    private Long byteSize;
+    private String contentHash;
+    private String contentType;
+    private String placeholder;
+}
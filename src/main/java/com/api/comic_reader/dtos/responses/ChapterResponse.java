@@ -15,4 +15,5 @@ public class ChapterResponse {
     private Long chapterNumber;
     private String createdAt;
     List<String> imageUrls;
+    private List<ChapterPageResponse> pages;
 }
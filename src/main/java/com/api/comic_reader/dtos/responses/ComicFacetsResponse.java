@@ -0,0 +1,17 @@
+package com.api.comic_reader.dtos.responses;
+
+import java.util.List;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@Builder
+@NoArgsConstructor
+public class ComicFacetsResponse {
+    // The number of matching comics per genre, ordered by genre ID. Genres without any matching comic are left out.
+    private List<GenreFacetResponse> genres;
+    private int finishedCount;
+    private int notFinishedCount;
+}
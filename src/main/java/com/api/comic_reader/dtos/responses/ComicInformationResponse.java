@@ -18,6 +18,10 @@ public class ComicInformationResponse {
     private Long view;
     private boolean isFinished;
     private Double averageRatingScore;
+    private Long ratingCount;
+
+    // The number of ratings of each score, from 1 to 5 stars
+    private List<Long> ratingStarCounts;
     private Long userRatingScore;
     private List<ComicGenreResponse> genres;
 }
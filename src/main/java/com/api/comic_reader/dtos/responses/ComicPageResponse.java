@@ -0,0 +1,19 @@
+package com.api.comic_reader.dtos.responses;
+
+import java.util.List;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@Builder
+@NoArgsConstructor
+public class ComicPageResponse {
+    private List<ComicResponse> comics;
+    private String nextCursor;
+    private boolean hasMore;
+
+    // The facet counts of all the matching comics, not only of this page, if they were requested
+    private ComicFacetsResponse facets;
+}
@@ -0,0 +1,18 @@
+package com.api.comic_reader.dtos.responses;
+
+import java.util.List;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@Builder
+@NoArgsConstructor
+public class ComicRatingResponse {
+    private Double averageScore;
+    private Long ratingCount;
+
+    // The number of ratings of each score, from 1 to 5 stars
+    private List<Long> starCounts;
+}
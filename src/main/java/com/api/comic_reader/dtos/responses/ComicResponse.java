@@ -19,4 +19,8 @@ public class ComicResponse {
     private ChapterResponse lastChapter;
     private boolean isFinished;
     private List<ComicGenreResponse> genres;
+
+    // The average and number of ratings, only set in the top rated listing
+    private Double averageRatingScore;
+    private Long ratingCount;
 }
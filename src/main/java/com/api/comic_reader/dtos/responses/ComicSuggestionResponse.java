@@ -0,0 +1,13 @@
+package com.api.comic_reader.dtos.responses;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@Builder
+@NoArgsConstructor
+public class ComicSuggestionResponse {
+    private Long id;
+    private String name;
+}
@@ -0,0 +1,13 @@
+package com.api.comic_reader.dtos.responses;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@Builder
+@NoArgsConstructor
+public class GenreFacetResponse {
+    private Long genreId;
+    private int count;
+}
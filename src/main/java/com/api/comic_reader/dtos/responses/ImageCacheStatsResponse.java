@@ -0,0 +1,19 @@
+package com.api.comic_reader.dtos.responses;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@Builder
+@NoArgsConstructor
+public class ImageCacheStatsResponse {
+    private long capacityBytes;
+    private long allocatedBytes;
+    private long usedBytes;
+    private int entryCount;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private double hitRate;
+}
@@ -15,14 +15,15 @@ import lombok.*;
 // @Builder: This annotation produces complex builder APIs.
 // @NoArgsConstructor: This annotation generates a constructor with no parameters.
 // @AllArgsConstructor: This annotation generates a constructor with one parameter for each field.
-// @Table: This annotation specifies the name of the database table to be used for mapping.
+// @Table: This annotation specifies the name of the database table to be used for mapping and its indexes.
+// The (comic_id, created_at) index lets the last chapter of a comic be found without scanning its chapters.
 @Getter
 @Setter
 @Entity
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "chapter")
+@Table(name = "chapter", indexes = @Index(name = "idx_chapter_comic_created_at", columnList = "comic_id, created_at"))
 public class ChapterEntity {
     // @Id: This annotation is used to specify the primary key of an entity.
 
@@ -13,6 +13,9 @@ import lombok.*;
 // @NoArgsConstructor: This annotation generates a constructor with no parameters.
 // @AllArgsConstructor: This annotation generates a constructor with one parameter for each field.
 // @Table: This annotation specifies the name of the database table to be used for mapping.
+// The unique (chapter_id, image_order) index lets the images of a chapter be listed in order without sorting them,
+// and guarantees that no two images of a chapter have the same order. It is created by DataMigrationConfig once the
+// duplicate orders are fixed, so it is not declared here.
 @Getter
 @Setter
 @Entity
@@ -47,6 +50,33 @@ public class ChapterImageEntity {
     @Column(name = "image_order", nullable = false)
     private Long imageOrder;
 
+    // The image data of images uploaded before the blob store existed, until they are moved to the blob store.
+    // It is null for every other image.
     @Column(name = "image_data", columnDefinition = "BYTEA")
     private byte[] imageData;
+
+    // The SHA-256 hash of the image data, used as its ETag.
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // The content type of the image, detected from its first bytes.
+    @Column(name = "content_type", length = 100)
+    private String contentType;
+
+    // The size of the image data in bytes.
+    @Column(name = "byte_size")
+    private Long byteSize;
+
+    // The width of the image in pixels, null if it cannot be read.
+    @Column(name = "width")
+    private Integer width;
+
+    // The height of the image in pixels, null if it cannot be read.
+    @Column(name = "height")
+    private Integer height;
+
+    // The CRC-32 of the image data, needed to write the image into a CBZ archive without reading it twice.
+    // It is null for images uploaded before it existed, until the image is first exported.
+    @Column(name = "crc32")
+    private Long crc32;
 }
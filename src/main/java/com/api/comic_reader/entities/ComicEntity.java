@@ -1,5 +1,6 @@
 package com.api.comic_reader.entities;
 
+import java.util.Date;
 import java.util.List;
 
 import jakarta.persistence.*;
@@ -12,14 +13,21 @@ import lombok.*;
 // @Builder: This annotation produces complex builder APIs.
 // @NoArgsConstructor: This annotation generates a constructor with no parameters.
 // @AllArgsConstructor: This annotation generates a constructor with one parameter for each field.
-// @Table: This annotation specifies the name of the database table to be used for mapping.
+// @Table: This annotation specifies the name of the database table to be used for mapping and its indexes.
+// The (view, id) and (last_chapter_at, id) indexes back the keyset pagination of the catalog.
+// The thumbnail is stored in ComicThumbnailEntity, so loading a comic never transfers image data.
 @Getter
 @Setter
 @Entity
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "comic")
+@Table(
+        name = "comic",
+        indexes = {
+            @Index(name = "idx_comic_view_id", columnList = "view, id"),
+            @Index(name = "idx_comic_last_chapter_at_id", columnList = "last_chapter_at, id")
+        })
 public class ComicEntity {
     // @Id: This annotation is used to specify the primary key of an entity.
 
@@ -44,21 +52,31 @@ public class ComicEntity {
     @Column(name = "author", nullable = false)
     private String author;
 
+    // The name and author normalized by TextNormalizationUtil, set whenever the name or author is set.
+    // They are null for the comics created before these columns existed, until DataMigrationConfig fills them in.
+    @Column(name = "normalized_name")
+    private String normalizedName;
+
+    @Column(name = "normalized_author")
+    private String normalizedAuthor;
+
     @Column(name = "view", nullable = false, columnDefinition = "bigint default 0")
     private Long view;
 
     @Column(name = "description", nullable = false, length = 1000)
     private String description;
 
-    @Column(name = "thumbnail_image", columnDefinition = "BYTEA")
-    private byte[] thumbnailImage;
-
     @Column(name = "is_finished", nullable = false)
     private Boolean isFinished;
 
     @Column(name = "is_deleted", columnDefinition = "boolean default false")
     private Boolean isDeleted;
 
+    // The creation date of the comic's last chapter, kept in sync by ChapterService.
+    // It is null when the comic has no chapter.
+    @Column(name = "last_chapter_at")
+    private Date lastChapterAt;
+
     @OneToMany(mappedBy = "comic", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
     private List<ChapterEntity> chapters;
 
@@ -0,0 +1,53 @@
+package com.api.comic_reader.entities;
+
+import jakarta.persistence.*;
+
+import lombok.*;
+
+// @Getter: This annotation is used to generate getters for all fields in the class.
+// @Setter: This annotation is used to generate setters for all fields in the class.
+// @Entity: This annotation specifies that the class is an entity and is mapped to a database table.
+// @Builder: This annotation produces complex builder APIs.
+// @NoArgsConstructor: This annotation generates a constructor with no parameters.
+// @AllArgsConstructor: This annotation generates a constructor with one parameter for each field.
+// @Table: This annotation specifies the name of the database table to be used for mapping.
+// The rating stats of a comic are the aggregates of its ratings, kept up to date in the transaction that rates the
+// comic, so its average and histogram are read from one row instead of being computed from all its ratings.
+@Getter
+@Setter
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "comic_rating_stats")
+public class ComicRatingStatsEntity {
+    // @Id: This annotation is used to specify the primary key of an entity.
+
+    // @Column: This annotation is used to specify the mapped column for a persistent property or field. It can also
+    // specify additional column properties such as name and nullable.
+    @Id
+    @Column(name = "comic_id")
+    private Long comicId;
+
+    @Column(name = "rating_count", nullable = false)
+    private Long ratingCount;
+
+    @Column(name = "rating_sum", nullable = false)
+    private Long ratingSum;
+
+    // The number of ratings of each score, from 1 to 5 stars
+    @Column(name = "one_star_count", nullable = false)
+    private Long oneStarCount;
+
+    @Column(name = "two_star_count", nullable = false)
+    private Long twoStarCount;
+
+    @Column(name = "three_star_count", nullable = false)
+    private Long threeStarCount;
+
+    @Column(name = "four_star_count", nullable = false)
+    private Long fourStarCount;
+
+    @Column(name = "five_star_count", nullable = false)
+    private Long fiveStarCount;
+}
@@ -0,0 +1,68 @@
+package com.api.comic_reader.entities;
+
+import jakarta.persistence.*;
+
+import lombok.*;
+
+// @Getter: This annotation is used to generate getters for all fields in the class.
+// @Setter: This annotation is used to generate setters for all fields in the class.
+// @Entity: This annotation specifies that the class is an entity and is mapped to a database table.
+// @Builder: This annotation produces complex builder APIs.
+// @NoArgsConstructor: This annotation generates a constructor with no parameters.
+// @AllArgsConstructor: This annotation generates a constructor with one parameter for each field.
+// @Table: This annotation specifies the name of the database table to be used for mapping.
+// The thumbnail of a comic is kept in its own table, so loading a comic never transfers its metadata either.
+// The image data itself is kept in the blob store.
+@Getter
+@Setter
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "comic_thumbnail")
+public class ComicThumbnailEntity {
+    // @Id: This annotation is used to specify the primary key of an entity. It is the ID of the comic.
+
+    // @OneToOne: This annotation is used to create a one-to-one relationship between entities. It is the owning side,
+    // and it is lazy, so the comic is only loaded when it is accessed.
+
+    // @MapsId: This annotation is used to specify that the primary key of the entity is the primary key of the comic.
+
+    // @JoinColumn: This annotation provides the name of the column in the database that holds the foreign key.
+
+    // @Column: This annotation is used to specify the mapped column for a persistent property or field. It can also
+    // specify additional column properties such as name, nullable, and columnDefinition.
+    @Id
+    @Column(name = "comic_id")
+    private Long comicId;
+
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @MapsId
+    @JoinColumn(name = "comic_id")
+    private ComicEntity comic;
+
+    // The image data of thumbnails uploaded before the blob store existed, until they are moved to the blob store.
+    // It is null for every other thumbnail.
+    @Column(name = "image_data", columnDefinition = "BYTEA")
+    private byte[] imageData;
+
+    // The SHA-256 hash of the image data, used as its ETag.
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // The content type of the image, detected from its first bytes.
+    @Column(name = "content_type", length = 100)
+    private String contentType;
+
+    // The size of the image data in bytes.
+    @Column(name = "byte_size")
+    private Long byteSize;
+
+    // The width of the image in pixels, null if it cannot be read.
+    @Column(name = "width")
+    private Integer width;
+
+    // The height of the image in pixels, null if it cannot be read.
+    @Column(name = "height")
+    private Integer height;
+}
@@ -0,0 +1,35 @@
+package com.api.comic_reader.entities;
+
+import jakarta.persistence.*;
+
+import lombok.*;
+
+// @Getter: This annotation is used to generate getters for all fields in the class.
+// @Setter: This annotation is used to generate setters for all fields in the class.
+// @Entity: This annotation specifies that the class is an entity and is mapped to a database table.
+// @Builder: This annotation produces complex builder APIs.
+// @NoArgsConstructor: This annotation generates a constructor with no parameters.
+// @AllArgsConstructor: This annotation generates a constructor with one parameter for each field.
+// @Table: This annotation specifies the name of the database table to be used for mapping.
+// A placeholder is the BlurHash of an image, keyed by its content hash, so identical images share it and it can be
+// computed before the row that references the image is inserted.
+@Getter
+@Setter
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "image_placeholder")
+public class ImagePlaceholderEntity {
+    // @Id: This annotation is used to specify the primary key of an entity.
+
+    // @Column: This annotation is used to specify the mapped column for a persistent property or field. It can also
+    // specify additional column properties such as name, nullable, and length.
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // The BlurHash of the image, null if the image cannot be decoded (e.g. WebP).
+    @Column(name = "blur_hash", length = 100)
+    private String blurHash;
+}
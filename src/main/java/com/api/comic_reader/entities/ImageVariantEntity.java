@@ -0,0 +1,64 @@
+package com.api.comic_reader.entities;
+
+import jakarta.persistence.*;
+
+import lombok.*;
+
+// @Getter: This annotation is used to generate getters for all fields in the class.
+// @Setter: This annotation is used to generate setters for all fields in the class.
+// @Entity: This annotation specifies that the class is an entity and is mapped to a database table.
+// @Builder: This annotation produces complex builder APIs.
+// @NoArgsConstructor: This annotation generates a constructor with no parameters.
+// @AllArgsConstructor: This annotation generates a constructor with one parameter for each field.
+// @Table: This annotation specifies the name of the database table to be used for mapping and its unique
+// constraints.
+// A variant is a downscaled copy of an image, bounded by a maximum width. Variants are keyed by the content hash of
+// their source image, so chapter images and thumbnails with the same content share them.
+@Getter
+@Setter
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(
+        name = "image_variant",
+        uniqueConstraints =
+                @UniqueConstraint(
+                        name = "uk_image_variant_source_max_width",
+                        columnNames = {"source_hash", "max_width"}))
+public class ImageVariantEntity {
+    // @Id: This annotation is used to specify the primary key of an entity.
+
+    // @GeneratedValue: This annotation provides for the specification of generation strategies for the values of
+    // primary keys.
+
+    // @Column: This annotation is used to specify the mapped column for a persistent property or field. It can also
+    // specify additional column properties such as name, nullable, and length.
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // The content hash of the source image.
+    @Column(name = "source_hash", nullable = false, length = 64)
+    private String sourceHash;
+
+    // The width bound of the variant, one of app.image-variants.widths.
+    @Column(name = "max_width", nullable = false)
+    private Integer maxWidth;
+
+    // The content hash of the variant, under which its data is kept in the blob store.
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "content_type", nullable = false, length = 100)
+    private String contentType;
+
+    @Column(name = "byte_size", nullable = false)
+    private Long byteSize;
+
+    @Column(name = "width", nullable = false)
+    private Integer width;
+
+    @Column(name = "height", nullable = false)
+    private Integer height;
+}
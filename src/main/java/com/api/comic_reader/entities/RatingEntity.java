@@ -15,6 +15,9 @@ import lombok.*;
 // @NoArgsConstructor: This annotation generates a constructor with no parameters.
 // @AllArgsConstructor: This annotation generates a constructor with one parameter for each field.
 // @Table: This annotation specifies the name of the database table to be used for mapping.
+// The unique (user_id, comic_id) index guarantees that a user rates a comic at most once, and is the conflict target
+// of the rating upsert. It is created by DataMigrationConfig once the duplicate ratings are removed, so it is not
+// declared here.
 @Getter
 @Setter
 @Entity
@@ -0,0 +1,23 @@
+package com.api.comic_reader.enums;
+
+// This enum represents the orders in which the comic catalog can be paginated.
+public enum ComicSort {
+    // Ascending comic ID, oldest comics first.
+    ID,
+    // Descending view count, most viewed comics first.
+    VIEW,
+    // Descending creation date of the last chapter, recently updated comics first.
+    LAST_CHAPTER;
+
+    // This method parses a sort name from a request parameter, e.g. "id", "view" or "lastChapter".
+    // It returns null if the name does not match any sort.
+    public static ComicSort fromValue(String value) {
+        String normalizedValue = value.replace("_", "").replace("-", "");
+        for (ComicSort sort : values()) {
+            if (sort.name().replace("_", "").equalsIgnoreCase(normalizedValue)) {
+                return sort;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,35 @@
+package com.api.comic_reader.enums;
+
+import lombok.Getter;
+
+// This enum represents the periods over which the trending comics are ranked.
+// The reads of each hour count less the older they are, halving every halfLifeHours, so the ranking follows what is
+// read now rather than what was read at the start of the period.
+@Getter
+public enum TrendingWindow {
+    // The last 24 hours.
+    DAY("24h", 24, 6.0),
+    // The last 7 days.
+    WEEK("7d", 168, 42.0);
+
+    private final String value;
+    private final int hours;
+    private final double halfLifeHours;
+
+    TrendingWindow(String value, int hours, double halfLifeHours) {
+        this.value = value;
+        this.hours = hours;
+        this.halfLifeHours = halfLifeHours;
+    }
+
+    // This method parses a window from a request parameter, "24h" or "7d".
+    // It returns null if the value does not match any window.
+    public static TrendingWindow fromValue(String value) {
+        for (TrendingWindow window : values()) {
+            if (window.value.equalsIgnoreCase(value)) {
+                return window;
+            }
+        }
+        return null;
+    }
+}
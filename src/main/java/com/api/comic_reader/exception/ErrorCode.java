@@ -24,6 +24,15 @@ public enum ErrorCode {
     INVALID_KEYWORD(4002, "Keyword must be larger than 3 characters", HttpStatus.OK),
     INVALID_COMMENT(4002, "Comment is invalid, comment must be larger than 7 characters", HttpStatus.OK),
     INVALID_OTP(4002, "OTP is invalid", HttpStatus.OK),
+    INVALID_CURSOR(4002, "Cursor is invalid", HttpStatus.OK),
+    INVALID_SCORE(4002, "Score must be between 1 and 5", HttpStatus.OK),
+    INVALID_TRENDING_WINDOW(4002, "Window is invalid, it must be 24h or 7d", HttpStatus.OK),
+    INVALID_SORT(4002, "Sort is invalid", HttpStatus.OK),
+    INVALID_IMAGE(4002, "Image is invalid, it must be a JPEG, PNG, GIF or WebP image", HttpStatus.OK),
+    IMAGE_TOO_LARGE(4002, "Image is too large", HttpStatus.OK),
+    INVALID_ARCHIVE(4002, "Archive is invalid", HttpStatus.OK),
+    ARCHIVE_TOO_LARGE(4002, "Archive is too large, download fewer chapters at once", HttpStatus.OK),
+    ARCHIVE_NOT_READY(4002, "Archive is not ready yet, try again later", HttpStatus.OK),
 
     EXISTS_CODE(4003, "", HttpStatus.OK),
     USERNAME_OR_EMAIL_TAKEN(4003, "Username or Email exists", HttpStatus.OK),
@@ -3,6 +3,8 @@ package com.api.comic_reader.repositories;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.api.comic_reader.entities.BookmarkEntity;
@@ -13,13 +15,47 @@ import com.api.comic_reader.entities.composite_keys.BookmarkKey;
 @Repository // This annotation is used to indicate that the class provides the mechanism for storage, retrieval, search,
 // update and delete operation on objects.
 public interface BookmarkRepository extends JpaRepository<BookmarkEntity, BookmarkKey> {
-    // This method checks if a bookmark exists for a specific comic by a specific user.
-    // It returns true if the bookmark exists, otherwise it returns false.
-    boolean existsByComicAndUser(ComicEntity comic, UserEntity user);
+    // This method bookmarks a comic for a user if it is not bookmarked yet, in one statement.
+    // It returns ADDED if the bookmark was saved, EXISTS if it was already saved and NOT_FOUND if the user or the
+    // comic does not exist.
+    @Query(
+            value = "WITH target AS (SELECT u.id AS user_id, c.id AS comic_id FROM comic_user u "
+                    + "JOIN comic c ON c.id = :comicId WHERE u.username = :username), "
+                    + "added AS (INSERT INTO bookmark (comic_id, user_id) SELECT comic_id, user_id FROM target "
+                    + "ON CONFLICT DO NOTHING RETURNING comic_id) "
+                    + "SELECT CASE WHEN NOT EXISTS (SELECT 1 FROM target) THEN 'NOT_FOUND' "
+                    + "WHEN EXISTS (SELECT 1 FROM added) THEN 'ADDED' ELSE 'EXISTS' END",
+            nativeQuery = true)
+    String insertBookmark(@Param("username") String username, @Param("comicId") Long comicId);
 
-    // This method deletes a bookmark for a specific comic by a specific user.
-    // It does not return any value.
-    void deleteByComicAndUser(ComicEntity comic, UserEntity user);
+    // This method removes the bookmark of a comic for a user if there is one, in one statement.
+    // It returns REMOVED if the bookmark was deleted, ABSENT if there was none and NOT_FOUND if the user or the
+    // comic does not exist.
+    @Query(
+            value = "WITH target AS (SELECT u.id AS user_id, c.id AS comic_id FROM comic_user u "
+                    + "JOIN comic c ON c.id = :comicId WHERE u.username = :username), "
+                    + "removed AS (DELETE FROM bookmark b USING target "
+                    + "WHERE b.comic_id = target.comic_id AND b.user_id = target.user_id RETURNING b.comic_id) "
+                    + "SELECT CASE WHEN NOT EXISTS (SELECT 1 FROM target) THEN 'NOT_FOUND' "
+                    + "WHEN EXISTS (SELECT 1 FROM removed) THEN 'REMOVED' ELSE 'ABSENT' END",
+            nativeQuery = true)
+    String deleteBookmark(@Param("username") String username, @Param("comicId") Long comicId);
+
+    // This method removes the bookmark of a comic for a user if there is one, and saves it otherwise, in one
+    // statement.
+    // It returns REMOVED if the bookmark was deleted, ADDED if the comic is now bookmarked and NOT_FOUND if the user
+    // or the comic does not exist. A bookmark saved by a concurrent request counts as ADDED.
+    @Query(
+            value = "WITH target AS (SELECT u.id AS user_id, c.id AS comic_id FROM comic_user u "
+                    + "JOIN comic c ON c.id = :comicId WHERE u.username = :username), "
+                    + "removed AS (DELETE FROM bookmark b USING target "
+                    + "WHERE b.comic_id = target.comic_id AND b.user_id = target.user_id RETURNING b.comic_id), "
+                    + "added AS (INSERT INTO bookmark (comic_id, user_id) SELECT comic_id, user_id FROM target "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM removed) ON CONFLICT DO NOTHING RETURNING comic_id) "
+                    + "SELECT CASE WHEN NOT EXISTS (SELECT 1 FROM target) THEN 'NOT_FOUND' "
+                    + "WHEN EXISTS (SELECT 1 FROM removed) THEN 'REMOVED' ELSE 'ADDED' END",
+            nativeQuery = true)
+    String toggleBookmark(@Param("username") String username, @Param("comicId") Long comicId);
 
     // This method finds all bookmarks associated with a specific user.
     // It returns a list of BookmarkEntity objects.
@@ -0,0 +1,63 @@
+package com.api.comic_reader.repositories;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import com.api.comic_reader.storage.StoredImage;
+
+@Repository // This annotation is used to indicate that the class provides the mechanism for storage, retrieval, search,
+// update and delete operation on objects.
+public class ChapterImageBatchRepository {
+    // This class inserts the images of a chapter with a single JDBC batch.
+    // Hibernate cannot batch the inserts of entities with IDENTITY IDs, as it must read each generated ID before the
+    // next insert.
+
+    private static final String INSERT_SQL = "INSERT INTO chapter_image "
+            + "(chapter_id, image_order, content_hash, content_type, byte_size, width, height, crc32) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // This method inserts images into a chapter, with consecutive orders starting at the given order.
+    // It returns the IDs of the inserted images, in the order of the given images.
+    // It must be called in a transaction that holds the lock of the chapter, so no other upload takes the same orders.
+    public List<Long> insertChapterImages(Long chapterId, long firstOrder, List<StoredImage> images) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_SQL, new String[] {"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        StoredImage image = images.get(i);
+                        statement.setLong(1, chapterId);
+                        statement.setLong(2, firstOrder + i);
+                        statement.setString(3, image.getContentHash());
+                        statement.setString(4, image.getContentType());
+                        statement.setLong(5, image.getByteSize());
+                        statement.setObject(6, image.getWidth(), Types.INTEGER);
+                        statement.setObject(7, image.getHeight(), Types.INTEGER);
+                        statement.setObject(8, image.getCrc32(), Types.BIGINT);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return images.size();
+                    }
+                },
+                keyHolder);
+
+        return keyHolder.getKeyList().stream()
+                .map(keys -> ((Number) keys.get("id")).longValue())
+                .toList();
+    }
+}
@@ -1,23 +1,181 @@
 package com.api.comic_reader.repositories;
 
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
-import com.api.comic_reader.entities.ChapterEntity;
 import com.api.comic_reader.entities.ChapterImageEntity;
+import com.api.comic_reader.repositories.projections.ChapterImageExport;
+import com.api.comic_reader.repositories.projections.ChapterImageSummary;
+import com.api.comic_reader.repositories.projections.ImageMetadata;
 
 @Repository // This annotation is used to indicate that the class provides the mechanism for storage, retrieval, search,
 // update and delete operation on objects.
 public interface ChapterImageRepository extends JpaRepository<ChapterImageEntity, Long> {
+    // This expression detects the content type of the image_data column from its first bytes.
+    // It recognizes the same formats as ImageUtil.detectContentType.
+    String CONTENT_TYPE_SQL = "CASE "
+            + "WHEN substring(image_data FROM 1 FOR 3) = decode('ffd8ff', 'hex') THEN 'image/jpeg' "
+            + "WHEN substring(image_data FROM 1 FOR 8) = decode('89504e470d0a1a0a', 'hex') THEN 'image/png' "
+            + "WHEN substring(image_data FROM 1 FOR 6) "
+            + "IN (decode('474946383761', 'hex'), decode('474946383961', 'hex')) THEN 'image/gif' "
+            + "WHEN substring(image_data FROM 1 FOR 4) = decode('52494646', 'hex') "
+            + "AND substring(image_data FROM 9 FOR 4) = decode('57454250', 'hex') THEN 'image/webp' "
+            + "ELSE 'application/octet-stream' END";
+
     // This method is used to find the maximum image order in a specific chapter.
     // It returns the maximum image order as a Long.
     @Query("SELECT MAX(imageOrder) FROM ChapterImageEntity c WHERE c.chapter.id = :chapterId")
     Long findMaxImageOrder(Long chapterId);
 
-    // This method is used to find all images associated with a specific chapter.
-    // It returns a list of ChapterImageEntity objects.
-    List<ChapterImageEntity> findByChapter(ChapterEntity chapter);
+    // This method gives consecutive orders to the images of the chapters where several images have the same order.
+    // Concurrent uploads could produce such duplicates before the orders were reserved under the chapter lock.
+    // It returns the number of renumbered images.
+    @Transactional
+    @Modifying
+    @Query(
+            value = "UPDATE chapter_image ci SET image_order = r.new_order FROM ("
+                    + "SELECT id, ROW_NUMBER() OVER (PARTITION BY chapter_id ORDER BY image_order, id) AS new_order "
+                    + "FROM chapter_image WHERE chapter_id IN (SELECT chapter_id FROM chapter_image "
+                    + "GROUP BY chapter_id, image_order HAVING COUNT(*) > 1)) r "
+                    + "WHERE ci.id = r.id AND ci.image_order <> r.new_order",
+            nativeQuery = true)
+    int renumberDuplicateOrders();
+
+    // This method is used to find the IDs, orders, metadata and placeholders of all images of a specific chapter,
+    // ordered by image order.
+    // The image data is not selected.
+    @Query(
+            value = "SELECT ci.id AS \"id\", ci.image_order AS \"imageOrder\", ci.width AS \"width\", "
+                    + "ci.height AS \"height\", ci.byte_size AS \"byteSize\", ci.content_hash AS \"contentHash\", "
+                    + "ci.content_type AS \"contentType\", p.blur_hash AS \"placeholder\" "
+                    + "FROM chapter_image ci LEFT JOIN image_placeholder p ON p.content_hash = ci.content_hash "
+                    + "WHERE ci.chapter_id = :chapterId ORDER BY ci.image_order",
+            nativeQuery = true)
+    List<ChapterImageSummary> findSummariesByChapterId(@Param("chapterId") Long chapterId);
+
+    // This method is used to find the hash, content type and size of an image, and where its data is stored.
+    // The stored metadata is used when present, so the image data is only read for images that have not been
+    // backfilled yet.
+    @Query(
+            value = "SELECT COALESCE(ci.content_hash, encode(sha256(ci.image_data), 'hex')) AS \"contentHash\", "
+                    + "COALESCE(ci.content_type, 'application/octet-stream') AS \"contentType\", "
+                    + "COALESCE(ci.byte_size, octet_length(ci.image_data)) AS \"byteSize\", "
+                    + "ci.image_data IS NOT NULL AS \"isStoredInDatabase\" "
+                    + "FROM chapter_image ci "
+                    + "WHERE ci.id = :imageId AND (ci.image_data IS NOT NULL OR ci.content_hash IS NOT NULL)",
+            nativeQuery = true)
+    Optional<ImageMetadata> findMetadataById(@Param("imageId") Long imageId);
+
+    // This method is used to fill in the hash, content type and size of images uploaded before these columns
+    // existed.
+    // It updates at most batchSize images and returns the number of updated images.
+    @Transactional
+    @Modifying
+    @Query(
+            value = "UPDATE chapter_image SET content_hash = encode(sha256(image_data), 'hex'), "
+                    + "content_type = " + CONTENT_TYPE_SQL + ", byte_size = octet_length(image_data) "
+                    + "WHERE id IN (SELECT id FROM chapter_image "
+                    + "WHERE content_hash IS NULL AND image_data IS NOT NULL LIMIT :batchSize)",
+            nativeQuery = true)
+    int backfillContentMetadata(@Param("batchSize") int batchSize);
+
+    // This method is used to find the IDs of images whose data is still stored in the database, in ID order.
+    @Query(
+            value = "SELECT id FROM chapter_image WHERE image_data IS NOT NULL ORDER BY id LIMIT :limit",
+            nativeQuery = true)
+    List<Long> findIdsStoredInDatabase(@Param("limit") int limit);
+
+    // This method is used to read the data of an image that is still stored in the database.
+    @Query("SELECT ci.imageData FROM ChapterImageEntity ci WHERE ci.id = :imageId")
+    Optional<byte[]> findImageDataById(@Param("imageId") Long imageId);
+
+    // This method is used to record that the data of an image has been moved to the blob store.
+    // It clears the image data and saves the metadata computed while moving it.
+    // It returns 0 if the image was deleted or moved in the meantime.
+    @Transactional
+    @Modifying
+    @Query(
+            value = "UPDATE chapter_image SET image_data = NULL, content_hash = :contentHash, "
+                    + "content_type = :contentType, byte_size = :byteSize, width = :width, height = :height, "
+                    + "crc32 = :crc32 WHERE id = :imageId AND image_data IS NOT NULL",
+            nativeQuery = true)
+    int markMovedToBlobStore(
+            @Param("imageId") Long imageId,
+            @Param("contentHash") String contentHash,
+            @Param("contentType") String contentType,
+            @Param("byteSize") long byteSize,
+            @Param("width") Integer width,
+            @Param("height") Integer height,
+            @Param("crc32") Long crc32);
+
+    // This method is used to find the images of the given chapters with what is needed to write them into a CBZ
+    // archive, ordered by chapter and image order.
+    // The image data is not selected.
+    @Query(
+            value = "SELECT ci.id AS \"id\", ci.chapter_id AS \"chapterId\", "
+                    + "COALESCE(ci.content_hash, encode(sha256(ci.image_data), 'hex')) AS \"contentHash\", "
+                    + "COALESCE(ci.content_type, 'application/octet-stream') AS \"contentType\", "
+                    + "COALESCE(ci.byte_size, octet_length(ci.image_data)) AS \"byteSize\", "
+                    + "ci.image_data IS NOT NULL AS \"isStoredInDatabase\", ci.crc32 AS \"crc32\" "
+                    + "FROM chapter_image ci "
+                    + "WHERE ci.chapter_id IN (:chapterIds) "
+                    + "AND (ci.image_data IS NOT NULL OR ci.content_hash IS NOT NULL) "
+                    + "ORDER BY ci.chapter_id, ci.image_order",
+            nativeQuery = true)
+    List<ChapterImageExport> findExportsByChapterIds(@Param("chapterIds") List<Long> chapterIds);
+
+    // This method is used to find a window of the images of a chapter, ordered by image order, with what is needed to
+    // stream them.
+    // The window starts after the given number of images. The image data is not selected.
+    @Query(
+            value = "SELECT ci.id AS \"id\", ci.chapter_id AS \"chapterId\", "
+                    + "COALESCE(ci.content_hash, encode(sha256(ci.image_data), 'hex')) AS \"contentHash\", "
+                    + "COALESCE(ci.content_type, 'application/octet-stream') AS \"contentType\", "
+                    + "COALESCE(ci.byte_size, octet_length(ci.image_data)) AS \"byteSize\", "
+                    + "ci.image_data IS NOT NULL AS \"isStoredInDatabase\", ci.crc32 AS \"crc32\" "
+                    + "FROM chapter_image ci "
+                    + "WHERE ci.chapter_id = :chapterId "
+                    + "AND (ci.image_data IS NOT NULL OR ci.content_hash IS NOT NULL) "
+                    + "ORDER BY ci.image_order OFFSET :offset LIMIT :limit",
+            nativeQuery = true)
+    List<ChapterImageExport> findPageWindowByChapterId(
+            @Param("chapterId") Long chapterId, @Param("offset") long offset, @Param("limit") int limit);
+
+    // This method is used to find the images stored in the blob store whose CRC-32 has not been computed yet, in ID
+    // order. The images still stored in the database get theirs when they are moved to the blob store.
+    @Query(
+            value = "SELECT ci.id AS \"id\", ci.chapter_id AS \"chapterId\", ci.content_hash AS \"contentHash\", "
+                    + "COALESCE(ci.content_type, 'application/octet-stream') AS \"contentType\", "
+                    + "ci.byte_size AS \"byteSize\", false AS \"isStoredInDatabase\", ci.crc32 AS \"crc32\" "
+                    + "FROM chapter_image ci "
+                    + "WHERE ci.crc32 IS NULL AND ci.image_data IS NULL AND ci.content_hash IS NOT NULL "
+                    + "ORDER BY ci.id LIMIT :limit",
+            nativeQuery = true)
+    List<ChapterImageExport> findStoredInBlobStoreWithoutCrc32(@Param("limit") int limit);
+
+    // This method is used to save the CRC-32 of an image uploaded before it was computed at upload time.
+    @Transactional
+    @Modifying
+    @Query("UPDATE ChapterImageEntity ci SET ci.crc32 = :crc32 WHERE ci.id = :imageId")
+    void updateCrc32(@Param("imageId") Long imageId, @Param("crc32") Long crc32);
+
+    // This method is used to find the content hashes of all images of a specific chapter.
+    @Query("SELECT ci.contentHash FROM ChapterImageEntity ci "
+            + "WHERE ci.chapter.id = :chapterId AND ci.contentHash IS NOT NULL")
+    List<String> findContentHashesByChapterId(@Param("chapterId") Long chapterId);
+
+    // This method is used to delete all images of a specific chapter in a single statement.
+    // The images are never loaded, so their data is not read.
+    // It returns the number of deleted images.
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ChapterImageEntity ci WHERE ci.chapter.id = :chapterId")
+    int deleteByChapterId(@Param("chapterId") Long chapterId);
 }
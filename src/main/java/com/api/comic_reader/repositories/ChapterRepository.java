@@ -3,7 +3,12 @@ package com.api.comic_reader.repositories;
 import java.util.List;
 import java.util.Optional;
 
+import jakarta.persistence.LockModeType;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.api.comic_reader.entities.ChapterEntity;
@@ -17,6 +22,18 @@ public interface ChapterRepository extends JpaRepository<ChapterEntity, Long> {
     @SuppressWarnings("null")
     Optional<ChapterEntity> findById(Long id);
 
+    // This method is used to find a chapter by its ID and lock its row until the end of the transaction.
+    // It serializes the uploads to a chapter, so each of them reserves its own range of image orders.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM ChapterEntity c WHERE c.id = :id")
+    Optional<ChapterEntity> findByIdForUpdate(@Param("id") Long id);
+
+    // This method is used to find the chapters of a comic whose number is in the given range, ordered by number.
+    @Query("SELECT c FROM ChapterEntity c WHERE c.comic.id = :comicId "
+            + "AND c.chapterNumber BETWEEN :fromNumber AND :toNumber ORDER BY c.chapterNumber, c.id")
+    List<ChapterEntity> findByComicIdAndChapterNumberRange(
+            @Param("comicId") Long comicId, @Param("fromNumber") Long fromNumber, @Param("toNumber") Long toNumber);
+
     // This method is used to find all chapters associated with a specific comic.
     // It returns a list of ChapterEntity objects.
     List<ChapterEntity> findByComic(ComicEntity comic);
@@ -1,10 +1,16 @@
 package com.api.comic_reader.repositories;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.api.comic_reader.entities.ComicGenreEntity;
 import com.api.comic_reader.entities.composite_keys.ComicGenreKey;
+import com.api.comic_reader.repositories.projections.ComicGenreView;
 
 @Repository // This annotation is used to indicate that the class provides the mechanism for storage, retrieval, search,
 // update and delete operation on objects.
@@ -12,6 +18,14 @@ public interface ComicGenreRepository extends JpaRepository<ComicGenreEntity, Co
     // This interface extends JpaRepository which provides methods to perform CRUD operations on ComicGenreEntity.
     // The primary key for ComicGenreEntity is a composite key (ComicGenreKey), which is used as the second generic
     // parameter for JpaRepository.
-    // No additional methods are declared here, so all operations will use the standard methods provided by
-    // JpaRepository.
+
+    // This method returns the genres of all comics that are not deleted in a single query.
+    @Query("SELECT cg.id.comicId AS comicId, g.id AS genreId, g.name AS genreName FROM ComicGenreEntity cg "
+            + "JOIN cg.genre g JOIN cg.comic c WHERE c.isDeleted = false ORDER BY g.id")
+    List<ComicGenreView> findGenresOfActiveComics();
+
+    // This method returns the genres of the given comics in a single query.
+    @Query("SELECT cg.id.comicId AS comicId, g.id AS genreId, g.name AS genreName FROM ComicGenreEntity cg "
+            + "JOIN cg.genre g WHERE cg.id.comicId IN :comicIds ORDER BY g.id")
+    List<ComicGenreView> findGenresOfComics(@Param("comicIds") Collection<Long> comicIds);
 }
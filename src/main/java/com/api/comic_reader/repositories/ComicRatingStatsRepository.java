@@ -0,0 +1,48 @@
+package com.api.comic_reader.repositories;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.api.comic_reader.entities.ComicRatingStatsEntity;
+
+@Repository // This annotation is used to indicate that the class provides the mechanism for storage, retrieval, search,
+// update and delete operation on objects.
+public interface ComicRatingStatsRepository extends JpaRepository<ComicRatingStatsEntity, Long> {
+    // This method finds the stats of the comics that have more than the given number of ratings.
+    List<ComicRatingStatsEntity> findByRatingCountGreaterThan(Long ratingCount);
+
+    // This method blocks the changes to the ratings until the end of the transaction, and waits for the pending
+    // ones to commit, so the stats can be recomputed from a stable set of ratings.
+    @Modifying
+    @Query(value = "LOCK TABLE rating IN SHARE MODE", nativeQuery = true)
+    void lockRatings();
+
+    // This method recomputes the stats of every comic from its ratings and writes the ones that differ from the
+    // stored stats, including the missing ones.
+    // It returns the number of comics whose stats were written.
+    @Modifying
+    @Query(
+            value = "INSERT INTO comic_rating_stats (comic_id, rating_count, rating_sum, one_star_count, "
+                    + "two_star_count, three_star_count, four_star_count, five_star_count) "
+                    + "SELECT c.id, COUNT(r.id), COALESCE(SUM(r.score), 0), "
+                    + "COUNT(r.id) FILTER (WHERE r.score = 1), COUNT(r.id) FILTER (WHERE r.score = 2), "
+                    + "COUNT(r.id) FILTER (WHERE r.score = 3), COUNT(r.id) FILTER (WHERE r.score = 4), "
+                    + "COUNT(r.id) FILTER (WHERE r.score = 5) "
+                    + "FROM comic c LEFT JOIN rating r ON r.comic_id = c.id GROUP BY c.id "
+                    + "ON CONFLICT (comic_id) DO UPDATE SET rating_count = EXCLUDED.rating_count, "
+                    + "rating_sum = EXCLUDED.rating_sum, one_star_count = EXCLUDED.one_star_count, "
+                    + "two_star_count = EXCLUDED.two_star_count, three_star_count = EXCLUDED.three_star_count, "
+                    + "four_star_count = EXCLUDED.four_star_count, five_star_count = EXCLUDED.five_star_count "
+                    + "WHERE (comic_rating_stats.rating_count, comic_rating_stats.rating_sum, "
+                    + "comic_rating_stats.one_star_count, comic_rating_stats.two_star_count, "
+                    + "comic_rating_stats.three_star_count, comic_rating_stats.four_star_count, "
+                    + "comic_rating_stats.five_star_count) IS DISTINCT FROM (EXCLUDED.rating_count, "
+                    + "EXCLUDED.rating_sum, EXCLUDED.one_star_count, EXCLUDED.two_star_count, "
+                    + "EXCLUDED.three_star_count, EXCLUDED.four_star_count, EXCLUDED.five_star_count)",
+            nativeQuery = true)
+    int rebuild();
+}
@@ -1,5 +1,6 @@
 package com.api.comic_reader.repositories;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
@@ -8,34 +9,144 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.api.comic_reader.entities.ComicEntity;
+import com.api.comic_reader.repositories.projections.ComicCatalogView;
+import com.api.comic_reader.repositories.projections.ComicFilterFlags;
+import com.api.comic_reader.repositories.projections.ComicSearchDocument;
+import com.api.comic_reader.repositories.projections.ComicViewCount;
 
 @Repository // This annotation is used to indicate that the class provides the mechanism for storage, retrieval, search,
 // update and delete operation on objects.
 public interface ComicRepository extends JpaRepository<ComicEntity, Long> {
-    // This method increases the view count of a specific comic.
-    // It does not return any value.
-    @Modifying
-    @Query("UPDATE ComicEntity c SET c.view = c.view + 1 WHERE c = :comicEntity")
-    void increaseView(@Param("comicEntity") ComicEntity comicEntity);
+    // This query selects the catalog columns of a comic together with its last chapter.
+    // The last chapter is picked by a lateral join, so the whole catalog is read in a single statement.
+    // The thumbnail image is never selected.
+    String CATALOG_SELECT = "SELECT c.id AS \"id\", c.name AS \"name\", c.author AS \"author\", "
+            + "c.description AS \"description\", c.view AS \"view\", c.is_finished AS \"isFinished\", "
+            + "lc.id AS \"lastChapterId\", lc.title AS \"lastChapterTitle\", "
+            + "lc.chapter_number AS \"lastChapterNumber\", lc.created_at AS \"lastChapterCreatedAt\" "
+            + "FROM comic c "
+            + "LEFT JOIN LATERAL (SELECT ch.id, ch.title, ch.chapter_number, ch.created_at FROM chapter ch "
+            + "WHERE ch.comic_id = c.id ORDER BY ch.created_at DESC LIMIT 1) lc ON TRUE ";
 
     // This method finds a comic by its name.
     // It returns an Optional that contains the ComicEntity if found, otherwise it returns an empty Optional.
     Optional<ComicEntity> findByName(String name);
 
-    // This method finds all comics that contain a specific string in their name, ignoring case.
-    // It returns a list of ComicEntity objects.
-    List<ComicEntity> findByNameContainingIgnoreCase(String name);
-
-    // This method finds all comics that have all of the specified genres.
-    // It returns a list of ComicEntity objects.
-    @Query(
-            "SELECT c FROM ComicEntity c JOIN c.genres g WHERE g.genre.id IN :genreIds GROUP BY c HAVING COUNT(DISTINCT g.genre.id) = :genreCount")
-    List<ComicEntity> findByGenresIdIn(@Param("genreIds") List<Long> genreIds, @Param("genreCount") long genreCount);
-
     // This method finds all comics that have a specific genre.
     // It returns a list of ComicEntity objects.
     @Query("SELECT c FROM ComicEntity c JOIN c.genres g WHERE g.genre.id = :genreId")
     List<ComicEntity> findByGenreId(Long genreId);
+
+    // This method returns the catalog view of all comics that are not deleted, ordered by ID.
+    @Query(value = CATALOG_SELECT + "WHERE c.is_deleted = FALSE ORDER BY c.id", nativeQuery = true)
+    List<ComicCatalogView> findCatalog();
+
+    // This method returns the catalog view of the comics with the given IDs that are not deleted.
+    // The comics are returned in no particular order.
+    @Query(value = CATALOG_SELECT + "WHERE c.is_deleted = FALSE AND c.id IN (:comicIds)", nativeQuery = true)
+    List<ComicCatalogView> findCatalogByIds(@Param("comicIds") List<Long> comicIds);
+
+    // This method returns the text columns and view count of all comics that are not deleted, to build the search
+    // indexes.
+    @Query("SELECT c.id AS id, c.view AS view, c.name AS name, c.author AS author, c.description AS description, "
+            + "c.normalizedName AS normalizedName, c.normalizedAuthor AS normalizedAuthor "
+            + "FROM ComicEntity c WHERE c.isDeleted = FALSE")
+    List<ComicSearchDocument> findSearchDocuments();
+
+    // This method returns the finished and deleted status of all comics, to build the genre bitmaps.
+    @Query("SELECT c.id AS id, c.isFinished AS isFinished, c.isDeleted AS isDeleted FROM ComicEntity c")
+    List<ComicFilterFlags> findFilterFlags();
+
+    // This method returns the persisted view count of all comics that are not deleted.
+    @Query("SELECT c.id AS id, c.view AS view FROM ComicEntity c WHERE c.isDeleted = FALSE")
+    List<ComicViewCount> findViewCounts();
+
+    // This method returns the catalog view of all comics that are not deleted and have the given finished status.
+    @Query(
+            value = CATALOG_SELECT + "WHERE c.is_deleted = FALSE AND c.is_finished = :isFinished ORDER BY c.id",
+            nativeQuery = true)
+    List<ComicCatalogView> findCatalogByFinished(@Param("isFinished") boolean isFinished);
+
+    // This method returns a page of the catalog ordered by ID, starting after the given ID.
+    // It only returns comics whose finished status is one of the given values.
+    @Query(
+            value = CATALOG_SELECT
+                    + "WHERE c.is_deleted = FALSE AND c.is_finished IN (:finished) AND c.id > :afterId "
+                    + "ORDER BY c.id LIMIT :limit",
+            nativeQuery = true)
+    List<ComicCatalogView> findCatalogPageById(
+            @Param("afterId") long afterId, @Param("finished") List<Boolean> finished, @Param("limit") int limit);
+
+    // This method returns a page of the catalog ordered by view count (most viewed first), starting after the given
+    // (view, id) position.
+    // It only returns comics whose finished status is one of the given values.
+    @Query(
+            value = CATALOG_SELECT
+                    + "WHERE c.is_deleted = FALSE AND c.is_finished IN (:finished) "
+                    + "AND (c.view, c.id) < (:afterView, :afterId) "
+                    + "ORDER BY c.view DESC, c.id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<ComicCatalogView> findCatalogPageByView(
+            @Param("afterView") long afterView,
+            @Param("afterId") long afterId,
+            @Param("finished") List<Boolean> finished,
+            @Param("limit") int limit);
+
+    // This method returns a page of the catalog ordered by the date of the last chapter (latest first), starting
+    // after the given (date, id) position.
+    // Comics without any chapter have no last chapter date and are not returned.
+    // It only returns comics whose finished status is one of the given values.
+    @Query(
+            value = CATALOG_SELECT
+                    + "WHERE c.is_deleted = FALSE AND c.is_finished IN (:finished) "
+                    + "AND c.last_chapter_at IS NOT NULL AND (c.last_chapter_at, c.id) < (:afterDate, :afterId) "
+                    + "ORDER BY c.last_chapter_at DESC, c.id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<ComicCatalogView> findCatalogPageByLastChapter(
+            @Param("afterDate") Date afterDate,
+            @Param("afterId") long afterId,
+            @Param("finished") List<Boolean> finished,
+            @Param("limit") int limit);
+
+    // This method returns the comics with the most recent last chapter, latest first.
+    // Comics without any chapter are not returned.
+    @Query(
+            value = CATALOG_SELECT
+                    + "WHERE c.is_deleted = FALSE AND c.last_chapter_at IS NOT NULL "
+                    + "ORDER BY c.last_chapter_at DESC, c.id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<ComicCatalogView> findLatestUpdatedCatalog(@Param("limit") int limit);
+
+    // This method returns the most viewed comics, most viewed first.
+    // Comics without any chapter are not returned.
+    @Query(
+            value = CATALOG_SELECT
+                    + "WHERE c.is_deleted = FALSE AND c.last_chapter_at IS NOT NULL "
+                    + "ORDER BY c.view DESC, c.id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<ComicCatalogView> findMostViewedCatalog(@Param("limit") int limit);
+
+    // This method sets the last chapter date of a comic to the creation date of its latest chapter.
+    // It must be called whenever a chapter of the comic is inserted or deleted.
+    @Transactional
+    @Modifying
+    @Query(
+            value = "UPDATE comic SET last_chapter_at = "
+                    + "(SELECT MAX(ch.created_at) FROM chapter ch WHERE ch.comic_id = :comicId) WHERE id = :comicId",
+            nativeQuery = true)
+    void refreshLastChapterAt(@Param("comicId") Long comicId);
+
+    // This method fills in the last chapter date of the comics that were created before the column existed.
+    // It returns the number of updated comics.
+    @Transactional
+    @Modifying
+    @Query(
+            value = "UPDATE comic c SET last_chapter_at = "
+                    + "(SELECT MAX(ch.created_at) FROM chapter ch WHERE ch.comic_id = c.id) "
+                    + "WHERE c.last_chapter_at IS NULL AND EXISTS (SELECT 1 FROM chapter ch WHERE ch.comic_id = c.id)",
+            nativeQuery = true)
+    int backfillLastChapterAt();
 }
@@ -0,0 +1,109 @@
+package com.api.comic_reader.repositories;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.api.comic_reader.entities.ComicThumbnailEntity;
+import com.api.comic_reader.repositories.projections.ImageMetadata;
+
+@Repository // This annotation is used to indicate that the class provides the mechanism for storage, retrieval, search,
+// update and delete operation on objects.
+public interface ComicThumbnailRepository extends JpaRepository<ComicThumbnailEntity, Long> {
+    // This method returns the hash, content type and size of the thumbnail of a comic that is not deleted, and where
+    // its data is stored.
+    // The stored metadata is used when present, so the image data is only read for thumbnails that have not been
+    // backfilled yet.
+    // It returns an empty Optional if the comic does not exist, is deleted or has no thumbnail.
+    @Query(
+            value = "SELECT COALESCE(t.content_hash, encode(sha256(t.image_data), 'hex')) AS \"contentHash\", "
+                    + "COALESCE(t.content_type, 'application/octet-stream') AS \"contentType\", "
+                    + "COALESCE(t.byte_size, octet_length(t.image_data)) AS \"byteSize\", "
+                    + "t.image_data IS NOT NULL AS \"isStoredInDatabase\" "
+                    + "FROM comic_thumbnail t JOIN comic c ON c.id = t.comic_id "
+                    + "WHERE t.comic_id = :comicId AND c.is_deleted = FALSE",
+            nativeQuery = true)
+    Optional<ImageMetadata> findMetadataByComicId(@Param("comicId") Long comicId);
+
+    // This method returns the content hash of the thumbnail of a comic.
+    @Query("SELECT t.contentHash FROM ComicThumbnailEntity t WHERE t.comicId = :comicId")
+    Optional<String> findContentHashByComicId(@Param("comicId") Long comicId);
+
+    // This method sets the metadata of the thumbnail of a comic, inserting the thumbnail if the comic has none yet.
+    // The image data must already be in the blob store. Any image data left in the database is cleared.
+    @Transactional
+    @Modifying
+    @Query(
+            value = "INSERT INTO comic_thumbnail (comic_id, image_data, content_hash, content_type, byte_size, width, "
+                    + "height) VALUES (:comicId, NULL, :contentHash, :contentType, :byteSize, :width, :height) "
+                    + "ON CONFLICT (comic_id) DO UPDATE SET image_data = NULL, "
+                    + "content_hash = EXCLUDED.content_hash, content_type = EXCLUDED.content_type, "
+                    + "byte_size = EXCLUDED.byte_size, width = EXCLUDED.width, height = EXCLUDED.height",
+            nativeQuery = true)
+    void upsertThumbnail(
+            @Param("comicId") Long comicId,
+            @Param("contentHash") String contentHash,
+            @Param("contentType") String contentType,
+            @Param("byteSize") long byteSize,
+            @Param("width") Integer width,
+            @Param("height") Integer height);
+
+    // This method returns the IDs of the comics whose thumbnail data is still stored in the database, in ID order.
+    @Query(
+            value = "SELECT comic_id FROM comic_thumbnail WHERE image_data IS NOT NULL ORDER BY comic_id LIMIT :limit",
+            nativeQuery = true)
+    List<Long> findComicIdsStoredInDatabase(@Param("limit") int limit);
+
+    // This method reads the thumbnail data of a comic that is still stored in the database.
+    @Query("SELECT t.imageData FROM ComicThumbnailEntity t WHERE t.comicId = :comicId")
+    Optional<byte[]> findImageDataByComicId(@Param("comicId") Long comicId);
+
+    // This method records that the thumbnail data of a comic has been moved to the blob store.
+    // It clears the image data and saves the metadata computed while moving it.
+    // It returns 0 if the thumbnail was replaced or moved in the meantime.
+    @Transactional
+    @Modifying
+    @Query(
+            value = "UPDATE comic_thumbnail SET image_data = NULL, content_hash = :contentHash, "
+                    + "content_type = :contentType, byte_size = :byteSize, width = :width, height = :height "
+                    + "WHERE comic_id = :comicId AND image_data IS NOT NULL",
+            nativeQuery = true)
+    int markMovedToBlobStore(
+            @Param("comicId") Long comicId,
+            @Param("contentHash") String contentHash,
+            @Param("contentType") String contentType,
+            @Param("byteSize") long byteSize,
+            @Param("width") Integer width,
+            @Param("height") Integer height);
+
+    // This method fills in the hash, content type and size of thumbnails uploaded before these columns existed.
+    // It updates at most batchSize thumbnails and returns the number of updated thumbnails.
+    @Transactional
+    @Modifying
+    @Query(
+            value = "UPDATE comic_thumbnail SET content_hash = encode(sha256(image_data), 'hex'), "
+                    + "content_type = " + ChapterImageRepository.CONTENT_TYPE_SQL + ", "
+                    + "byte_size = octet_length(image_data) "
+                    + "WHERE comic_id IN (SELECT comic_id FROM comic_thumbnail "
+                    + "WHERE content_hash IS NULL AND image_data IS NOT NULL LIMIT :batchSize)",
+            nativeQuery = true)
+    int backfillContentMetadata(@Param("batchSize") int batchSize);
+
+    // This method copies the thumbnails that are still stored in the legacy comic.thumbnail_image column.
+    // It must only be called while that column exists.
+    // It returns the number of copied thumbnails.
+    @Transactional
+    @Modifying
+    @Query(
+            value = "INSERT INTO comic_thumbnail (comic_id, image_data) "
+                    + "SELECT c.id, c.thumbnail_image FROM comic c WHERE c.thumbnail_image IS NOT NULL "
+                    + "ON CONFLICT (comic_id) DO NOTHING",
+            nativeQuery = true)
+    int copyLegacyThumbnails();
+}
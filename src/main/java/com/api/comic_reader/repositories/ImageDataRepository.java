@@ -0,0 +1,66 @@
+package com.api.comic_reader.repositories;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Repository;
+
+@Repository // This annotation is used to indicate that the class provides the mechanism for storage, retrieval, search,
+// update and delete operation on objects.
+public class ImageDataRepository {
+    // This class reads image data that is still stored in BYTEA columns through JDBC binary streams, so the data is
+    // copied to the client without being mapped to an entity.
+    // Only the requested range is selected from the database.
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // This method writes a range of the data of a chapter image to the given output stream.
+    // It returns false if the image data is not stored in the database.
+    public boolean writeChapterImageData(Long imageId, long offset, long length, OutputStream outputStream) {
+        return writeRange(
+                "SELECT substring(image_data FROM ? FOR ?) FROM chapter_image WHERE id = ? AND image_data IS NOT NULL",
+                imageId,
+                offset,
+                length,
+                outputStream);
+    }
+
+    // This method writes a range of the thumbnail data of a comic to the given output stream.
+    // It returns false if the thumbnail data is not stored in the database.
+    public boolean writeThumbnailData(Long comicId, long offset, long length, OutputStream outputStream) {
+        return writeRange(
+                "SELECT substring(image_data FROM ? FOR ?) FROM comic_thumbnail "
+                        + "WHERE comic_id = ? AND image_data IS NOT NULL",
+                comicId,
+                offset,
+                length,
+                outputStream);
+    }
+
+    private boolean writeRange(String sql, Long id, long offset, long length, OutputStream outputStream) {
+        Boolean written = jdbcTemplate.query(
+                sql,
+                (ResultSetExtractor<Boolean>) resultSet -> {
+                    if (!resultSet.next()) {
+                        return false;
+                    }
+                    try (InputStream inputStream = resultSet.getBinaryStream(1)) {
+                        inputStream.transferTo(outputStream);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return true;
+                },
+                // The positions of substring start at 1
+                Math.toIntExact(offset + 1),
+                Math.toIntExact(length),
+                id);
+        return Boolean.TRUE.equals(written);
+    }
+}
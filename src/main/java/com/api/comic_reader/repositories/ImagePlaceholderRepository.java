@@ -0,0 +1,38 @@
+package com.api.comic_reader.repositories;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.api.comic_reader.entities.ImagePlaceholderEntity;
+
+@Repository // This annotation is used to indicate that the class provides the mechanism for storage, retrieval, search,
+// update and delete operation on objects.
+public interface ImagePlaceholderRepository extends JpaRepository<ImagePlaceholderEntity, String> {
+    // This method saves the placeholder of an image, unless it has already been saved.
+    @Transactional
+    @Modifying
+    @Query(
+            value = "INSERT INTO image_placeholder (content_hash, blur_hash) VALUES (:contentHash, :blurHash) "
+                    + "ON CONFLICT (content_hash) DO NOTHING",
+            nativeQuery = true)
+    void insertIfAbsent(@Param("contentHash") String contentHash, @Param("blurHash") String blurHash);
+
+    // This method finds the content hashes of the chapter images and thumbnails in the blob store that have no
+    // placeholder yet.
+    @Query(
+            value = "SELECT i.content_hash FROM ("
+                    + "SELECT ci.content_hash FROM chapter_image ci "
+                    + "WHERE ci.content_hash IS NOT NULL AND ci.image_data IS NULL "
+                    + "UNION SELECT ct.content_hash FROM comic_thumbnail ct "
+                    + "WHERE ct.content_hash IS NOT NULL AND ct.image_data IS NULL) i "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM image_placeholder p WHERE p.content_hash = i.content_hash) "
+                    + "LIMIT :limit",
+            nativeQuery = true)
+    List<String> findContentHashesWithoutPlaceholder(@Param("limit") int limit);
+}
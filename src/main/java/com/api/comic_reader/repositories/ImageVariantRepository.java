@@ -0,0 +1,48 @@
+package com.api.comic_reader.repositories;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.api.comic_reader.entities.ImageVariantEntity;
+import com.api.comic_reader.repositories.projections.ImageMetadata;
+
+@Repository // This annotation is used to indicate that the class provides the mechanism for storage, retrieval, search,
+// update and delete operation on objects.
+public interface ImageVariantRepository extends JpaRepository<ImageVariantEntity, Long> {
+    // This method finds the smallest variant of an image that is at least as wide as the given width.
+    // It returns an empty Optional if every variant is narrower, in which case the original should be served.
+    @Query(
+            value = "SELECT v.content_hash AS \"contentHash\", v.content_type AS \"contentType\", "
+                    + "v.byte_size AS \"byteSize\", FALSE AS \"isStoredInDatabase\" "
+                    + "FROM image_variant v WHERE v.source_hash = :sourceHash AND v.max_width >= :width "
+                    + "ORDER BY v.max_width LIMIT 1",
+            nativeQuery = true)
+    Optional<ImageMetadata> findSmallestVariantAtLeast(
+            @Param("sourceHash") String sourceHash, @Param("width") int width);
+
+    // This method checks whether the variants of an image have been generated.
+    boolean existsBySourceHash(String sourceHash);
+
+    // This method saves a variant, unless a variant of the same image with the same width bound already exists.
+    @Transactional
+    @Modifying
+    @Query(
+            value = "INSERT INTO image_variant (source_hash, max_width, content_hash, content_type, byte_size, width, "
+                    + "height) VALUES (:sourceHash, :maxWidth, :contentHash, :contentType, :byteSize, :width, :height) "
+                    + "ON CONFLICT (source_hash, max_width) DO NOTHING",
+            nativeQuery = true)
+    void insertIfAbsent(
+            @Param("sourceHash") String sourceHash,
+            @Param("maxWidth") int maxWidth,
+            @Param("contentHash") String contentHash,
+            @Param("contentType") String contentType,
+            @Param("byteSize") long byteSize,
+            @Param("width") int width,
+            @Param("height") int height);
+}
@@ -5,32 +5,78 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.api.comic_reader.entities.ComicEntity;
 import com.api.comic_reader.entities.RatingEntity;
 import com.api.comic_reader.entities.UserEntity;
+import com.api.comic_reader.repositories.projections.RatingUpsertResult;
 
 @Repository // This annotation is used to indicate that the class provides the mechanism for storage, retrieval, search,
 // update and delete operation on objects.
 public interface RatingRepository extends JpaRepository<RatingEntity, Long> {
-    // This method checks if a rating exists for a specific comic by a specific user.
-    // It returns true if the rating exists, otherwise it returns false.
-    boolean existsByComicAndUser(ComicEntity comic, UserEntity user);
-
-    // This method updates the score of a rating for a specific comic by a specific user.
-    // It does not return any value.
-    @Modifying
-    @Query("update RatingEntity r set r.score = :score where r.comic = :comic and r.user = :user")
-    void updateByComicAndUser(
-            @Param("comic") ComicEntity comic, @Param("user") UserEntity user, @Param("score") Long score);
-
-    // This method calculates the average rating of a specific comic.
-    // It returns the average rating as a Double.
-    @Query("select avg(r.score) from RatingEntity r where r.comic = :comic")
-    Double getComicAverageRating(@Param("comic") ComicEntity comic);
-
     // This method finds a rating for a specific comic by a specific user.
     // It returns the RatingEntity if found, otherwise it returns null.
     @Query("select r from RatingEntity r where r.comic = :comic and r.user = :user")
     RatingEntity findByComicAndUser(@Param("comic") ComicEntity comic, @Param("user") UserEntity user);
+
+    // This method saves the score of a user for a comic and updates the rating stats of the comic, in one statement.
+    // The rating is inserted, or updated if the user has already rated the comic, and the stats get the new rating
+    // or the difference between the old and the new score. The old score is read with a row lock, so it is still
+    // the current one when it is replaced.
+    // Its status is RATED if the rating was saved, NOT_FOUND if the user or the comic does not exist, and CONFLICT
+    // if the rating was inserted by a concurrent request after the statement started, in which case nothing was
+    // changed and the statement must be run again. It also returns the score the rating had before.
+    @Query(
+            value = "WITH rater AS (SELECT u.id AS user_id, c.id AS comic_id FROM comic_user u "
+                    + "JOIN comic c ON c.id = :comicId WHERE u.username = :username), "
+                    + "previous AS (SELECT r.score FROM rating r JOIN rater "
+                    + "ON r.user_id = rater.user_id AND r.comic_id = rater.comic_id FOR UPDATE OF r), "
+                    + "rated AS (INSERT INTO rating (user_id, comic_id, score) "
+                    + "SELECT user_id, comic_id, :score FROM rater "
+                    + "ON CONFLICT (user_id, comic_id) DO UPDATE SET score = EXCLUDED.score "
+                    + "WHERE EXISTS (SELECT 1 FROM previous) RETURNING comic_id, score), "
+                    + "added AS (INSERT INTO comic_rating_stats (comic_id, rating_count, rating_sum, "
+                    + "one_star_count, two_star_count, three_star_count, four_star_count, five_star_count) "
+                    + "SELECT comic_id, 1, score, CASE WHEN score = 1 THEN 1 ELSE 0 END, "
+                    + "CASE WHEN score = 2 THEN 1 ELSE 0 END, CASE WHEN score = 3 THEN 1 ELSE 0 END, "
+                    + "CASE WHEN score = 4 THEN 1 ELSE 0 END, CASE WHEN score = 5 THEN 1 ELSE 0 END "
+                    + "FROM rated WHERE NOT EXISTS (SELECT 1 FROM previous) "
+                    + "ON CONFLICT (comic_id) DO UPDATE SET "
+                    + "rating_count = comic_rating_stats.rating_count + 1, "
+                    + "rating_sum = comic_rating_stats.rating_sum + EXCLUDED.rating_sum, "
+                    + "one_star_count = comic_rating_stats.one_star_count + EXCLUDED.one_star_count, "
+                    + "two_star_count = comic_rating_stats.two_star_count + EXCLUDED.two_star_count, "
+                    + "three_star_count = comic_rating_stats.three_star_count + EXCLUDED.three_star_count, "
+                    + "four_star_count = comic_rating_stats.four_star_count + EXCLUDED.four_star_count, "
+                    + "five_star_count = comic_rating_stats.five_star_count + EXCLUDED.five_star_count), "
+                    + "changed AS (UPDATE comic_rating_stats s SET rating_sum = s.rating_sum + n.score - p.score, "
+                    + "one_star_count = s.one_star_count "
+                    + "+ CASE WHEN n.score = 1 THEN 1 ELSE 0 END - CASE WHEN p.score = 1 THEN 1 ELSE 0 END, "
+                    + "two_star_count = s.two_star_count "
+                    + "+ CASE WHEN n.score = 2 THEN 1 ELSE 0 END - CASE WHEN p.score = 2 THEN 1 ELSE 0 END, "
+                    + "three_star_count = s.three_star_count "
+                    + "+ CASE WHEN n.score = 3 THEN 1 ELSE 0 END - CASE WHEN p.score = 3 THEN 1 ELSE 0 END, "
+                    + "four_star_count = s.four_star_count "
+                    + "+ CASE WHEN n.score = 4 THEN 1 ELSE 0 END - CASE WHEN p.score = 4 THEN 1 ELSE 0 END, "
+                    + "five_star_count = s.five_star_count "
+                    + "+ CASE WHEN n.score = 5 THEN 1 ELSE 0 END - CASE WHEN p.score = 5 THEN 1 ELSE 0 END "
+                    + "FROM rated n CROSS JOIN previous p WHERE s.comic_id = n.comic_id) "
+                    + "SELECT CASE WHEN NOT EXISTS (SELECT 1 FROM rater) THEN 'NOT_FOUND' "
+                    + "WHEN EXISTS (SELECT 1 FROM rated) THEN 'RATED' ELSE 'CONFLICT' END AS \"status\", "
+                    + "(SELECT score FROM previous) AS \"previousScore\"",
+            nativeQuery = true)
+    RatingUpsertResult upsertRating(
+            @Param("username") String username, @Param("comicId") Long comicId, @Param("score") Long score);
+
+    // This method deletes the duplicate ratings of a user for a comic, keeping the latest one.
+    // Concurrent ratings could insert such duplicates before the unique (user_id, comic_id) index existed.
+    // It returns the number of deleted ratings.
+    @Transactional
+    @Modifying
+    @Query(
+            value = "DELETE FROM rating r USING rating newer WHERE newer.user_id = r.user_id "
+                    + "AND newer.comic_id = r.comic_id AND newer.id > r.id",
+            nativeQuery = true)
+    int deleteDuplicateRatings();
 }
@@ -0,0 +1,11 @@
+package com.api.comic_reader.repositories.projections;
+
+// This interface is a read-only projection of a chapter image with what is needed to write it into a CBZ archive.
+public interface ChapterImageExport extends ImageMetadata {
+    Long getId();
+
+    Long getChapterId();
+
+    // The CRC-32 of the image data, null if it has not been computed yet
+    Long getCrc32();
+}
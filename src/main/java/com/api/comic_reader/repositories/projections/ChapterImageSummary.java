@@ -0,0 +1,23 @@
+package com.api.comic_reader.repositories.projections;
+
+// This interface is a read-only projection of the metadata of a chapter image.
+// It never contains the image data, so listing the images of a chapter does not load their bytes.
+public interface ChapterImageSummary {
+    Long getId();
+
+    Long getImageOrder();
+
+    // The dimensions are null if they could not be read from the image
+    Integer getWidth();
+
+    Integer getHeight();
+
+    Long getByteSize();
+
+    String getContentHash();
+
+    String getContentType();
+
+    // The BlurHash of the image, null until it has been computed or if the image cannot be decoded
+    String getPlaceholder();
+}
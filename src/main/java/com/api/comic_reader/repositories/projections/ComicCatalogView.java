@@ -0,0 +1,27 @@
+package com.api.comic_reader.repositories.projections;
+
+import java.util.Date;
+
+// This interface is a read-only projection of a comic row used by the catalog listings.
+// It carries the comic's own columns and its last chapter (if any), but never the thumbnail image.
+public interface ComicCatalogView {
+    Long getId();
+
+    String getName();
+
+    String getAuthor();
+
+    String getDescription();
+
+    Long getView();
+
+    Boolean getIsFinished();
+
+    Long getLastChapterId();
+
+    String getLastChapterTitle();
+
+    Long getLastChapterNumber();
+
+    Date getLastChapterCreatedAt();
+}
@@ -0,0 +1,10 @@
+package com.api.comic_reader.repositories.projections;
+
+// This interface is a read-only projection of the status columns of a comic that the genre bitmaps are built from.
+public interface ComicFilterFlags {
+    Long getId();
+
+    Boolean getIsFinished();
+
+    Boolean getIsDeleted();
+}
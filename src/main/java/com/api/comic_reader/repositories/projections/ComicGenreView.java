@@ -0,0 +1,11 @@
+package com.api.comic_reader.repositories.projections;
+
+// This interface is a read-only projection of a comic-genre link together with the genre's name.
+// It is used to fetch the genres of many comics in a single query.
+public interface ComicGenreView {
+    Long getComicId();
+
+    Long getGenreId();
+
+    String getGenreName();
+}
@@ -0,0 +1,19 @@
+package com.api.comic_reader.repositories.projections;
+
+// This interface is a read-only projection of the columns of a comic that the search indexes are built from.
+public interface ComicSearchDocument {
+    Long getId();
+
+    Long getView();
+
+    String getName();
+
+    String getAuthor();
+
+    // The normalized name and author, null for the comics created before they were stored and not backfilled yet
+    String getNormalizedName();
+
+    String getNormalizedAuthor();
+
+    String getDescription();
+}
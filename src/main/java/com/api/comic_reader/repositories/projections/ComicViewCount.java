@@ -0,0 +1,8 @@
+package com.api.comic_reader.repositories.projections;
+
+// This interface is a read-only projection of the persisted view count of a comic.
+public interface ComicViewCount {
+    Long getId();
+
+    Long getView();
+}
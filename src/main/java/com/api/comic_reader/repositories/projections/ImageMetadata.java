@@ -0,0 +1,14 @@
+package com.api.comic_reader.repositories.projections;
+
+// This interface is a read-only projection of the metadata of a stored image.
+// It is enough to answer conditional and range requests without reading the image data.
+public interface ImageMetadata {
+    String getContentHash();
+
+    String getContentType();
+
+    Long getByteSize();
+
+    // Whether the image data is still stored in the database rather than in the blob store
+    Boolean getIsStoredInDatabase();
+}
@@ -0,0 +1,9 @@
+package com.api.comic_reader.repositories.projections;
+
+// This interface is a read-only projection of the result of the rating upsert: its status and the score the rating
+// had before, null if the rating was inserted.
+public interface RatingUpsertResult {
+    String getStatus();
+
+    Long getPreviousScore();
+}
@@ -0,0 +1,95 @@
+package com.api.comic_reader.search;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// This class counts events per key, such as the reads of each comic, in hourly buckets.
+// Each key has a ring of buckets, one per hour of the retention period, that is reused as the hours pass. A bucket
+// packs its hour and its count in one long, so an event is recorded with a single compare-and-set, without a lock,
+// and a bucket left from an older hour is reset by the first event of its new hour.
+// The counts are only kept in memory.
+public class HourlyEventCounter {
+    private static final long COUNT_MASK = 0xFFFFFFFFL;
+
+    private final int bucketCount;
+    private final Map<Long, AtomicLongArray> bucketsByKey = new ConcurrentHashMap<>();
+
+    // This constructor creates a counter that keeps the counts of the last retentionHours hours.
+    public HourlyEventCounter(int retentionHours) {
+        this.bucketCount = retentionHours;
+    }
+
+    // This method records one event of a key in the given hour, counted in hours since the epoch.
+    // An event older than the retention period is ignored.
+    public void record(long key, long hour) {
+        AtomicLongArray buckets = bucketsByKey.computeIfAbsent(key, k -> new AtomicLongArray(bucketCount));
+        int index = (int) (hour % bucketCount);
+
+        long bucket;
+        long updated;
+        do {
+            bucket = buckets.get(index);
+            long bucketHour = hourOf(bucket);
+            if (bucketHour > hour) {
+                return;
+            }
+            updated = (bucketHour == hour) ? bucket + 1 : pack(hour, 1);
+        } while (!buckets.compareAndSet(index, bucket, updated));
+    }
+
+    // This method returns, for each key with events in the window ending at the given hour, the sum of its hourly
+    // counts weighted by their age: the count of an hour is halved every halfLifeHours.
+    // The window is capped at the retention period.
+    public Map<Long, Double> decayedCounts(long currentHour, int windowHours, double halfLifeHours) {
+        int window = Math.min(windowHours, bucketCount);
+        Map<Long, Double> decayedCounts = new HashMap<>();
+
+        for (Map.Entry<Long, AtomicLongArray> entry : bucketsByKey.entrySet()) {
+            AtomicLongArray buckets = entry.getValue();
+            double decayedCount = 0.0;
+            for (int i = 0; i < bucketCount; i++) {
+                long bucket = buckets.get(i);
+                long age = currentHour - hourOf(bucket);
+                if (age >= 0 && age < window) {
+                    decayedCount += countOf(bucket) * Math.pow(0.5, age / halfLifeHours);
+                }
+            }
+            if (decayedCount > 0) {
+                decayedCounts.put(entry.getKey(), decayedCount);
+            }
+        }
+        return decayedCounts;
+    }
+
+    // This method forgets the keys without events in the retention period ending at the given hour.
+    // An event recorded for such a key while it is forgotten may be lost.
+    public void removeIdle(long currentHour) {
+        bucketsByKey.values().removeIf(buckets -> {
+            for (int i = 0; i < bucketCount; i++) {
+                if (currentHour - hourOf(buckets.get(i)) < bucketCount) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    // This method returns the number of keys with a ring of buckets.
+    public int size() {
+        return bucketsByKey.size();
+    }
+
+    private static long pack(long hour, long count) {
+        return (hour << 32) | count;
+    }
+
+    private static long hourOf(long bucket) {
+        return bucket >>> 32;
+    }
+
+    private static long countOf(long bucket) {
+        return bucket & COUNT_MASK;
+    }
+}
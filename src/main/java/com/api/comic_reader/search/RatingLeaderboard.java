@@ -0,0 +1,158 @@
+package com.api.comic_reader.search;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import lombok.Getter;
+
+// This class keeps, in memory, the rated comics sorted by the Bayesian average of their ratings, best first.
+// The Bayesian average adds priorWeight votes of the prior mean to the ratings of each comic, so a comic with a few
+// high ratings does not rank above a comic with many good ones: (priorWeight * priorMean + sum) / (priorWeight + count)
+// The prior mean is fixed when the leaderboard is built, so a new rating only moves the comic it rates, which is a
+// removal and an insertion in a sorted tree.
+// A page of a subset of the comics, such as a genre, walks the tree until it finds enough comics of the subset. If
+// the subset ranks low, the walk stops after as many steps as the subset has comics, and the best comics of the subset
+// are selected from the subset itself, so a page never costs more than the smaller of the two.
+// Rankings run concurrently, updates take an exclusive lock.
+public class RatingLeaderboard {
+    // A rated comic and its position in the leaderboard
+    @Getter
+    public static class Entry {
+        private final long comicId;
+        private final long ratingCount;
+        private final long ratingSum;
+        private final double score;
+
+        private Entry(long comicId, long ratingCount, long ratingSum, double score) {
+            this.comicId = comicId;
+            this.ratingCount = ratingCount;
+            this.ratingSum = ratingSum;
+            this.score = score;
+        }
+
+        // This method returns the plain average of the ratings of the comic.
+        public double getAverageScore() {
+            return (double) ratingSum / ratingCount;
+        }
+    }
+
+    // Higher scores first, then lower comic IDs first so the order is total
+    private static final Comparator<Entry> SCORE_ORDER =
+            Comparator.comparingDouble(Entry::getScore).reversed().thenComparingLong(Entry::getComicId);
+
+    private final double priorMean;
+    private final double priorWeight;
+    private final TreeSet<Entry> ranking = new TreeSet<>(SCORE_ORDER);
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // This constructor creates an empty leaderboard with the given prior.
+    public RatingLeaderboard(double priorMean, double priorWeight) {
+        this.priorMean = priorMean;
+        this.priorWeight = priorWeight;
+    }
+
+    // This method sets the rating count and sum of a comic, used to fill the leaderboard from the stored stats.
+    // A comic without ratings is not ranked.
+    public void put(long comicId, long ratingCount, long ratingSum) {
+        lock.writeLock().lock();
+        try {
+            update(comicId, ratingCount, ratingSum);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // This method adds a rating to a comic, or replaces one of its scores by another if previousScore is not null.
+    // The changes are relative, so they can be applied in any order.
+    public void rate(long comicId, Long previousScore, long score) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(comicId);
+            long ratingCount = (entry == null) ? 0L : entry.ratingCount;
+            long ratingSum = (entry == null) ? 0L : entry.ratingSum;
+            if (previousScore == null) {
+                update(comicId, ratingCount + 1, ratingSum + score);
+            } else {
+                update(comicId, ratingCount, ratingSum + score - previousScore);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // This method returns the best ranked comics of the given set that rank after the given position, best first.
+    // The position is the score and ID of the last comic of the previous page, or null for the first page.
+    // At most limit comics are returned.
+    public List<Entry> page(BitSet comicIds, Double afterScore, long afterId, int limit) {
+        List<Entry> page = new ArrayList<>();
+        Entry after = (afterScore == null) ? null : new Entry(afterId, 0L, 0L, afterScore);
+
+        lock.readLock().lock();
+        try {
+            Iterable<Entry> candidates = (after == null) ? ranking : ranking.tailSet(after, false);
+            int maxSteps = comicIds.cardinality();
+            int steps = 0;
+            for (Entry entry : candidates) {
+                if (page.size() >= limit) {
+                    return page;
+                }
+                if (++steps > maxSteps) {
+                    return selectPage(comicIds, after, limit);
+                }
+                if (comicIds.get(Math.toIntExact(entry.comicId))) {
+                    page.add(entry);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return page;
+    }
+
+    // This method returns the best ranked comics of the given set that rank after the given position, by looking up
+    // each comic of the set, the caller must hold the read lock.
+    // Only the best limit comics are kept while the set is walked, in a heap whose head is the worst of them.
+    private List<Entry> selectPage(BitSet comicIds, Entry after, int limit) {
+        PriorityQueue<Entry> best = new PriorityQueue<>(SCORE_ORDER.reversed());
+        for (int comicId = comicIds.nextSetBit(0); comicId >= 0; comicId = comicIds.nextSetBit(comicId + 1)) {
+            Entry entry = entries.get((long) comicId);
+            if (entry == null || (after != null && SCORE_ORDER.compare(entry, after) <= 0)) {
+                continue;
+            }
+            best.offer(entry);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+
+        List<Entry> page = new ArrayList<>(best);
+        page.sort(SCORE_ORDER);
+        return page;
+    }
+
+    // This method moves a comic to the position of its new rating count and sum, the caller must hold the write lock.
+    private void update(long comicId, long ratingCount, long ratingSum) {
+        Entry previous = entries.remove(comicId);
+        if (previous != null) {
+            ranking.remove(previous);
+        }
+        if (ratingCount <= 0) {
+            return;
+        }
+
+        double score = (priorWeight * priorMean + ratingSum) / (priorWeight + ratingCount);
+        Entry entry = new Entry(comicId, ratingCount, ratingSum, score);
+        entries.put(comicId, entry);
+        ranking.add(entry);
+    }
+}
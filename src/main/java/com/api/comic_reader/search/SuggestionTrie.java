@@ -0,0 +1,222 @@
+package com.api.comic_reader.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import lombok.Getter;
+
+// This class is an in-memory radix trie that suggests entries whose terms start with a prefix, for type-ahead.
+// Each entry has a label to show, a rank and a few terms, and each node of the trie keeps the best ranked entries
+// of its subtree. A suggestion therefore only walks down the characters of the prefix and returns the list of the
+// node it ends in, whatever the number of entries.
+// Edges are labeled with strings rather than single characters, so chains of nodes with one child are stored as one
+// edge.
+// Suggestions run concurrently, updates take an exclusive lock.
+public class SuggestionTrie {
+    // A suggested entry
+    @Getter
+    public static class Suggestion {
+        private final long key;
+        private final String label;
+        private final long rank;
+        private final Set<String> terms;
+
+        private Suggestion(long key, String label, long rank, Set<String> terms) {
+            this.key = key;
+            this.label = label;
+            this.rank = rank;
+            this.terms = terms;
+        }
+    }
+
+    // A node of the trie, reached from its parent by its edge
+    private static class Node {
+        private String edge;
+        private final Map<Character, Node> children = new HashMap<>();
+
+        // The entries that have a term ending at this node
+        private final Set<Long> keys = new HashSet<>();
+
+        // The best ranked entries of the subtree, best first
+        private List<Suggestion> top = List.of();
+
+        private Node(String edge) {
+            this.edge = edge;
+        }
+    }
+
+    // Higher ranks first, then lower keys first so the order is stable
+    private static final Comparator<Suggestion> RANK_ORDER =
+            Comparator.comparingLong(Suggestion::getRank).reversed().thenComparingLong(Suggestion::getKey);
+
+    private final int maxSuggestions;
+    private final Node root = new Node("");
+    private final Map<Long, Suggestion> entries = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // This constructor creates an empty trie whose nodes keep at most maxSuggestions entries.
+    public SuggestionTrie(int maxSuggestions) {
+        this.maxSuggestions = maxSuggestions;
+    }
+
+    // This method adds an entry to the trie, or replaces it if the key is already in the trie.
+    // The terms must already be normalized, empty terms are ignored.
+    public void put(long key, String label, long rank, Set<String> terms) {
+        Set<String> nonEmptyTerms = new LinkedHashSet<>(terms);
+        nonEmptyTerms.remove("");
+        Suggestion suggestion = new Suggestion(key, label, rank, nonEmptyTerms);
+
+        lock.writeLock().lock();
+        try {
+            removeEntry(key);
+            entries.put(key, suggestion);
+            for (String term : nonEmptyTerms) {
+                insert(root, term, key);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // This method removes an entry from the trie, if it is in the trie.
+    public void remove(long key) {
+        lock.writeLock().lock();
+        try {
+            removeEntry(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // This method returns the entry with the given key, or null if it is not in the trie.
+    public Suggestion get(long key) {
+        lock.readLock().lock();
+        try {
+            return entries.get(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // This method returns the best ranked entries that have a term starting with the normalized prefix, best first.
+    // It returns nothing for an empty prefix.
+    public List<Suggestion> suggest(String prefix) {
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            String remaining = prefix;
+            while (!remaining.isEmpty()) {
+                Node child = node.children.get(remaining.charAt(0));
+                if (child == null) {
+                    return List.of();
+                }
+                if (child.edge.startsWith(remaining)) {
+                    return child.top;
+                }
+                if (!remaining.startsWith(child.edge)) {
+                    return List.of();
+                }
+                remaining = remaining.substring(child.edge.length());
+                node = child;
+            }
+            return node.top;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // This method inserts a term of an entry below a node, splitting an edge if the term diverges in its middle, and
+    // updates the best entries of the nodes on the way back up.
+    private void insert(Node node, String remaining, long key) {
+        if (remaining.isEmpty()) {
+            node.keys.add(key);
+        } else {
+            Node child = node.children.get(remaining.charAt(0));
+            if (child == null) {
+                child = new Node(remaining);
+                node.children.put(remaining.charAt(0), child);
+                insert(child, "", key);
+            } else {
+                int common = commonPrefixLength(child.edge, remaining);
+                if (common < child.edge.length()) {
+                    Node middle = new Node(child.edge.substring(0, common));
+                    child.edge = child.edge.substring(common);
+                    middle.children.put(child.edge.charAt(0), child);
+                    middle.top = child.top;
+                    node.children.put(middle.edge.charAt(0), middle);
+                    child = middle;
+                }
+                insert(child, remaining.substring(common), key);
+            }
+        }
+        updateTop(node);
+    }
+
+    // This method removes a term of an entry below a node, removes the nodes left without entries, and updates the
+    // best entries of the nodes on the way back up.
+    // It returns whether the node is left without entries.
+    private boolean delete(Node node, String remaining, long key) {
+        if (remaining.isEmpty()) {
+            node.keys.remove(key);
+        } else {
+            Node child = node.children.get(remaining.charAt(0));
+            if (child != null && remaining.startsWith(child.edge)) {
+                if (delete(child, remaining.substring(child.edge.length()), key)) {
+                    node.children.remove(remaining.charAt(0));
+                }
+            }
+        }
+        updateTop(node);
+        return node != root && node.keys.isEmpty() && node.children.isEmpty();
+    }
+
+    // This method removes an entry and its terms, the caller must hold the write lock.
+    // The entry is only forgotten once all its terms are removed, as the nodes of its other terms still rank it.
+    private void removeEntry(long key) {
+        Suggestion suggestion = entries.get(key);
+        if (suggestion == null) {
+            return;
+        }
+        for (String term : suggestion.terms) {
+            delete(root, term, key);
+        }
+        entries.remove(key);
+    }
+
+    // This method recomputes the best entries of a node from its own entries and the best entries of its children.
+    private void updateTop(Node node) {
+        Set<Suggestion> candidates = new HashSet<>();
+        for (Long key : node.keys) {
+            candidates.add(entries.get(key));
+        }
+        for (Node child : node.children.values()) {
+            candidates.addAll(child.top);
+        }
+
+        List<Suggestion> top = new ArrayList<>(candidates);
+        top.sort(RANK_ORDER);
+        node.top = List.copyOf((top.size() > maxSuggestions) ? top.subList(0, maxSuggestions) : top);
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,448 @@
+package com.api.comic_reader.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.api.comic_reader.utils.TextNormalizationUtil;
+
+import lombok.Getter;
+
+// This class is an in-memory inverted index from the trigrams of a few weighted text fields to the documents that
+// contain them.
+// Documents are given dense int IDs, and each trigram of each field maps to a sorted array of these IDs, so a search
+// only walks the posting lists of the trigrams of the query and never looks at the other documents.
+// The ID of a removed document is given to the next added one, so the IDs stay dense however often documents change.
+// A document matches if one of its fields contains enough of the trigrams of the query, which finds substrings like
+// LIKE '%query%' does, but also names with a typo. Matches are ranked by how much of the query each field contains,
+// weighted by field, with a bonus for the fields that contain the whole query.
+// The first fields, such as a name, are also indexed by token. A document also matches if every token of the query
+// is a token of one of these fields, the prefix of one, or within a few edits of one, so a query still matches when
+// a short word is misspelled, which trigrams alone miss.
+// The tokens of a field are kept in a sorted dictionary, so the tokens that a query token prefixes are a range of it.
+// The tokens within a few edits are looked up by the padded bigrams they share with the query token: an edit changes
+// at most three of them, so only the tokens that share enough bigrams are compared edit by edit.
+// Texts are normalized by TextNormalizationUtil, so searches ignore case and diacritics.
+// Searches run concurrently, updates take an exclusive lock.
+public class TrigramIndex {
+    // The quality of a query token that is a token of the field, the prefix of one, or within a few edits of one
+    private static final double EXACT_TOKEN_QUALITY = 1.0;
+    private static final double PREFIX_TOKEN_QUALITY = 0.8;
+    private static final double EDIT_PENALTY = 0.3;
+
+    // A document and the normalized text of its fields, kept to remove its trigrams and to find exact matches
+    private static class Document {
+        private final long key;
+        private final String[] fields;
+
+        private Document(long key, String[] fields) {
+            this.key = key;
+            this.fields = fields;
+        }
+    }
+
+    // A growable sorted array of document IDs
+    private static class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        // New documents usually get the largest ID, which is appended, while a reused ID is inserted in place
+        private void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            int index = (size == 0 || ids[size - 1] < id) ? size : -Arrays.binarySearch(ids, 0, size, id) - 1;
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+
+        private void remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                size--;
+            }
+        }
+    }
+
+    // The trigram counts and token matches of a document that a query reached, by field
+    private static class Candidate {
+        private final int id;
+        private final int[] trigramCounts;
+        private final int[] matchedTokens;
+        private final double[] tokenQualities;
+
+        private Candidate(int id, int fieldCount, int tokenizedFieldCount) {
+            this.id = id;
+            this.trigramCounts = new int[fieldCount];
+            this.matchedTokens = new int[tokenizedFieldCount];
+            this.tokenQualities = new double[tokenizedFieldCount];
+        }
+    }
+
+    // A document that matches a query, with its score
+    @Getter
+    public static class Match {
+        private final long key;
+        private final double score;
+
+        private Match(long key, double score) {
+            this.key = key;
+            this.score = score;
+        }
+    }
+
+    private final double[] fieldWeights;
+    private final int tokenizedFieldCount;
+
+    // The posting lists of each field, by trigram
+    private final List<Map<Long, Postings>> postings = new ArrayList<>();
+
+    // The posting lists of each tokenized field, by token in sorted order
+    private final List<NavigableMap<String, Postings>> tokenPostings = new ArrayList<>();
+
+    // The tokens of each tokenized field, by padded bigram
+    private final List<Map<Integer, Set<String>>> tokensByBigram = new ArrayList<>();
+
+    // The documents by ID, null once removed
+    private final List<Document> documents = new ArrayList<>();
+    private final Map<Long, Integer> documentIdsByKey = new HashMap<>();
+
+    // The IDs of the removed documents, given to the next added ones
+    private final Deque<Integer> freeIds = new ArrayDeque<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // This constructor creates an empty index of documents with one field per given weight.
+    // The first tokenizedFieldCount fields are also indexed by token.
+    public TrigramIndex(int tokenizedFieldCount, double... fieldWeights) {
+        this.fieldWeights = fieldWeights.clone();
+        this.tokenizedFieldCount = Math.min(tokenizedFieldCount, fieldWeights.length);
+        for (int i = 0; i < fieldWeights.length; i++) {
+            postings.add(new HashMap<>());
+        }
+        for (int i = 0; i < this.tokenizedFieldCount; i++) {
+            tokenPostings.add(new TreeMap<>());
+            tokensByBigram.add(new HashMap<>());
+        }
+    }
+
+    // This method adds a document to the index, or replaces it if the key is already indexed.
+    // The fields are given in the order of the weights, a null field is indexed as empty.
+    public void put(long key, String... fields) {
+        String[] normalizedFields = new String[fieldWeights.length];
+        for (int i = 0; i < fieldWeights.length; i++) {
+            normalizedFields[i] = TextNormalizationUtil.normalize((i < fields.length) ? fields[i] : null);
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeDocument(key);
+
+            Document document = new Document(key, normalizedFields);
+            int id = freeIds.isEmpty() ? documents.size() : freeIds.pop();
+            if (id == documents.size()) {
+                documents.add(document);
+            } else {
+                documents.set(id, document);
+            }
+            documentIdsByKey.put(key, id);
+            for (int i = 0; i < normalizedFields.length; i++) {
+                Map<Long, Postings> fieldPostings = postings.get(i);
+                for (long trigram : trigrams(normalizedFields[i])) {
+                    fieldPostings.computeIfAbsent(trigram, t -> new Postings()).add(id);
+                }
+            }
+            for (int i = 0; i < tokenizedFieldCount; i++) {
+                Map<String, Postings> fieldTokenPostings = tokenPostings.get(i);
+                Map<Integer, Set<String>> fieldTokensByBigram = tokensByBigram.get(i);
+                for (String token : tokens(normalizedFields[i])) {
+                    Postings tokenPostingList = fieldTokenPostings.get(token);
+                    if (tokenPostingList == null) {
+                        tokenPostingList = new Postings();
+                        fieldTokenPostings.put(token, tokenPostingList);
+                        for (int bigram : bigrams(token)) {
+                            fieldTokensByBigram
+                                    .computeIfAbsent(bigram, b -> new HashSet<>())
+                                    .add(token);
+                        }
+                    }
+                    tokenPostingList.add(id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // This method removes a document from the index, if it is indexed.
+    public void remove(long key) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // This method returns the number of documents in the index.
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documentIdsByKey.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // This method returns the documents that match the query, best match first, at most limit of them.
+    // A document matches if one of its fields contains at least minSimilarity of the distinct trigrams of the query,
+    // or if one of its tokenized fields matches every token of the query.
+    // It returns nothing if the normalized query is empty.
+    public List<Match> search(String query, double minSimilarity, int limit) {
+        String normalizedQuery = TextNormalizationUtil.normalize(query);
+        Set<Long> queryTrigrams = trigrams(normalizedQuery);
+        Set<String> queryTokens = tokens(normalizedQuery);
+        if (queryTokens.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            // Only the documents that the query reaches are counted, so a search allocates nothing per document
+            Map<Integer, Candidate> candidates = new HashMap<>();
+
+            // Count, for each field of each document, how many trigrams of the query it contains
+            for (int field = 0; field < fieldWeights.length; field++) {
+                Map<Long, Postings> fieldPostings = postings.get(field);
+                for (long trigram : queryTrigrams) {
+                    Postings trigramPostings = fieldPostings.get(trigram);
+                    if (trigramPostings == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < trigramPostings.size; i++) {
+                        candidate(candidates, trigramPostings.ids[i]).trigramCounts[field]++;
+                    }
+                }
+            }
+
+            // Sum, for each tokenized field of each document, the quality of its best match of each query token
+            for (int field = 0; field < tokenizedFieldCount; field++) {
+                for (String queryToken : queryTokens) {
+                    Map<Integer, Double> bestQualities = new HashMap<>();
+                    for (Map.Entry<String, Double> match :
+                            matchingTokens(field, queryToken).entrySet()) {
+                        Postings tokenPostingList = tokenPostings.get(field).get(match.getKey());
+                        for (int i = 0; i < tokenPostingList.size; i++) {
+                            bestQualities.merge(tokenPostingList.ids[i], match.getValue(), Math::max);
+                        }
+                    }
+
+                    for (Map.Entry<Integer, Double> entry : bestQualities.entrySet()) {
+                        Candidate candidate = candidate(candidates, entry.getKey());
+                        candidate.matchedTokens[field]++;
+                        candidate.tokenQualities[field] += entry.getValue();
+                    }
+                }
+            }
+
+            List<Match> matches = new ArrayList<>();
+            for (Candidate candidate : candidates.values()) {
+                Document document = documents.get(candidate.id);
+                double bestSimilarity = 0;
+                boolean matchesAllTokens = false;
+                double score = 0;
+                for (int field = 0; field < fieldWeights.length; field++) {
+                    double similarity = queryTrigrams.isEmpty()
+                            ? 0
+                            : (double) candidate.trigramCounts[field] / queryTrigrams.size();
+                    bestSimilarity = Math.max(bestSimilarity, similarity);
+                    score += fieldWeights[field] * similarity;
+                    if (document.fields[field].contains(normalizedQuery)) {
+                        score += fieldWeights[field];
+                    }
+                    if (field < tokenizedFieldCount) {
+                        matchesAllTokens |= candidate.matchedTokens[field] == queryTokens.size();
+                        score += fieldWeights[field] * candidate.tokenQualities[field] / queryTokens.size();
+                    }
+                }
+                if ((!queryTrigrams.isEmpty() && bestSimilarity >= minSimilarity) || matchesAllTokens) {
+                    matches.add(new Match(document.key, score));
+                }
+            }
+
+            matches.sort(Comparator.comparingDouble(Match::getScore).reversed().thenComparingLong(Match::getKey));
+            return (matches.size() > limit) ? new ArrayList<>(matches.subList(0, limit)) : matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // This method returns the candidate of a document, created on the first match of the document.
+    private Candidate candidate(Map<Integer, Candidate> candidates, int id) {
+        return candidates.computeIfAbsent(id, i -> new Candidate(i, fieldWeights.length, tokenizedFieldCount));
+    }
+
+    // This method removes a document and its trigrams, the caller must hold the write lock.
+    // Its ID is given to the next added document.
+    private void removeDocument(long key) {
+        Integer id = documentIdsByKey.remove(key);
+        if (id == null) {
+            return;
+        }
+
+        Document document = documents.get(id);
+        documents.set(id, null);
+        freeIds.push(id);
+        for (int i = 0; i < document.fields.length; i++) {
+            Map<Long, Postings> fieldPostings = postings.get(i);
+            for (long trigram : trigrams(document.fields[i])) {
+                Postings trigramPostings = fieldPostings.get(trigram);
+                trigramPostings.remove(id);
+                if (trigramPostings.size == 0) {
+                    fieldPostings.remove(trigram);
+                }
+            }
+        }
+        for (int i = 0; i < tokenizedFieldCount; i++) {
+            Map<String, Postings> fieldTokenPostings = tokenPostings.get(i);
+            Map<Integer, Set<String>> fieldTokensByBigram = tokensByBigram.get(i);
+            for (String token : tokens(document.fields[i])) {
+                Postings tokenPostingList = fieldTokenPostings.get(token);
+                tokenPostingList.remove(id);
+                if (tokenPostingList.size == 0) {
+                    fieldTokenPostings.remove(token);
+                    for (int bigram : bigrams(token)) {
+                        Set<String> bigramTokens = fieldTokensByBigram.get(bigram);
+                        bigramTokens.remove(token);
+                        if (bigramTokens.isEmpty()) {
+                            fieldTokensByBigram.remove(bigram);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // This method returns the tokens of a tokenized field that a query token matches, with how well it matches each:
+    // 1 if they are equal, less if the query token is a prefix of the token or within a few edits of it.
+    // The number of edits allowed grows with the length of the query token, so short tokens must match exactly.
+    // The caller must hold the read lock.
+    private Map<String, Double> matchingTokens(int field, String queryToken) {
+        Map<String, Double> qualities = new HashMap<>();
+        for (String token : tokenPostings
+                .get(field)
+                .subMap(queryToken, true, queryToken + Character.MAX_VALUE, false)
+                .keySet()) {
+            qualities.put(token, token.equals(queryToken) ? EXACT_TOKEN_QUALITY : PREFIX_TOKEN_QUALITY);
+        }
+
+        int maxEdits = (queryToken.length() <= 3) ? 0 : (queryToken.length() <= 7) ? 1 : 2;
+        if (maxEdits == 0) {
+            return qualities;
+        }
+
+        // Count the bigrams that each token of a close length shares with the query token
+        Set<Integer> queryBigrams = bigrams(queryToken);
+        Map<String, Integer> sharedBigrams = new HashMap<>();
+        for (int bigram : queryBigrams) {
+            Set<String> bigramTokens = tokensByBigram.get(field).get(bigram);
+            if (bigramTokens == null) {
+                continue;
+            }
+            for (String token : bigramTokens) {
+                if (Math.abs(token.length() - queryToken.length()) <= maxEdits && !qualities.containsKey(token)) {
+                    sharedBigrams.merge(token, 1, Integer::sum);
+                }
+            }
+        }
+
+        // An edit changes at most three bigrams of the query token, so a token within maxEdits shares all the others
+        int minSharedBigrams = queryBigrams.size() - 3 * maxEdits;
+        for (Map.Entry<String, Integer> entry : sharedBigrams.entrySet()) {
+            if (entry.getValue() < minSharedBigrams) {
+                continue;
+            }
+            int edits = editDistance(queryToken, entry.getKey(), maxEdits);
+            if (edits <= maxEdits) {
+                qualities.put(entry.getKey(), EXACT_TOKEN_QUALITY - EDIT_PENALTY * edits);
+            }
+        }
+        return qualities;
+    }
+
+    // This method returns the number of insertions, deletions, substitutions and transpositions of adjacent characters
+    // that turn one string into the other, or maxEdits + 1 as soon as it is known to be larger than maxEdits.
+    private static int editDistance(String a, String b, int maxEdits) {
+        if (Math.abs(a.length() - b.length()) > maxEdits) {
+            return maxEdits + 1;
+        }
+
+        int[] previousPrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMinimum = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = (a.charAt(i - 1) == b.charAt(j - 1)) ? 0 : 1;
+                int distance = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    distance = Math.min(distance, previousPrevious[j - 2] + 1);
+                }
+                current[j] = distance;
+                rowMinimum = Math.min(rowMinimum, distance);
+            }
+            if (rowMinimum > maxEdits) {
+                return maxEdits + 1;
+            }
+
+            int[] recycled = previousPrevious;
+            previousPrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[b.length()], maxEdits + 1);
+    }
+
+    // This method returns the distinct tokens of a normalized text.
+    private static Set<String> tokens(String text) {
+        return new LinkedHashSet<>(TextNormalizationUtil.tokenize(text));
+    }
+
+    // This method returns the distinct bigrams of a token padded with a space on each side, each packed in an int.
+    // The padding gives the first and last characters bigrams of their own, so a short token still has a few.
+    private static Set<Integer> bigrams(String token) {
+        String padded = " " + token + " ";
+        Set<Integer> bigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 2 <= padded.length(); i++) {
+            bigrams.add((padded.charAt(i) << 16) | padded.charAt(i + 1));
+        }
+        return bigrams;
+    }
+
+    // This method returns the distinct trigrams of a normalized text, each packed in a long.
+    private static Set<Long> trigrams(String text) {
+        Set<Long> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return trigrams;
+    }
+}
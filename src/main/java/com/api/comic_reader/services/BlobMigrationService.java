@@ -0,0 +1,168 @@
+package com.api.comic_reader.services;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.api.comic_reader.repositories.ChapterImageRepository;
+import com.api.comic_reader.repositories.ComicThumbnailRepository;
+import com.api.comic_reader.repositories.projections.ChapterImageExport;
+import com.api.comic_reader.storage.StoredImage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BlobMigrationService {
+    // This service moves the image data that is still stored in BYTEA columns to the blob store, while the
+    // application keeps serving it.
+    // Images are moved one at a time and at most app.storage.migration.batch-size per run, so the migration never
+    // holds more than one image in memory and its load on the database stays bounded.
+    // The CRC-32 of the images moved before it was saved is computed in the same batches, so CBZ archives can be
+    // described from the database only.
+    // When the migration is disabled, the batches only fill in the hash, content type and size of the images uploaded
+    // before these columns existed, as moving an image fills them in too.
+
+    @Autowired
+    private ChapterImageRepository chapterImageRepository;
+
+    @Autowired
+    private ComicThumbnailRepository comicThumbnailRepository;
+
+    @Autowired
+    private ImageStorageService imageStorageService;
+
+    @Value("${app.storage.migration.enabled}")
+    private boolean MIGRATION_ENABLED;
+
+    @Value("${app.storage.migration.batch-size}")
+    private int BATCH_SIZE;
+
+    // This method moves one batch of thumbnails and chapter images to the blob store.
+    // Thumbnails are moved first, as there are few of them and they are read the most.
+    // The rest of the batch computes the missing CRC-32 of the chapter images already in the blob store.
+    @Scheduled(
+            fixedDelayString = "${app.storage.migration.interval-ms}",
+            initialDelayString = "${app.storage.migration.interval-ms}")
+    public void migrateBatch() {
+        if (!MIGRATION_ENABLED) {
+            backfillContentMetadata();
+            return;
+        }
+
+        int movedCount = 0;
+
+        List<Long> comicIds = comicThumbnailRepository.findComicIdsStoredInDatabase(BATCH_SIZE);
+        for (Long comicId : comicIds) {
+            if (migrateThumbnail(comicId)) {
+                movedCount++;
+            }
+        }
+
+        int remaining = BATCH_SIZE - comicIds.size();
+        if (remaining > 0) {
+            for (Long imageId : chapterImageRepository.findIdsStoredInDatabase(remaining)) {
+                if (migrateChapterImage(imageId)) {
+                    movedCount++;
+                }
+            }
+        }
+
+        if (movedCount > 0) {
+            log.info("Moved {} images from the database to the blob store", movedCount);
+        }
+
+        remaining = BATCH_SIZE - movedCount;
+        if (remaining > 0) {
+            int checksummedCount = 0;
+            for (ChapterImageExport image : chapterImageRepository.findStoredInBlobStoreWithoutCrc32(remaining)) {
+                if (computeCrc32(image)) {
+                    checksummedCount++;
+                }
+            }
+            if (checksummedCount > 0) {
+                log.info("Computed the CRC-32 of {} chapter images", checksummedCount);
+            }
+        }
+    }
+
+    // This method fills in the hash, content type and size of one batch of thumbnails and chapter images still stored
+    // in the database, the hash being computed by the database.
+    private void backfillContentMetadata() {
+        int backfilledCount = comicThumbnailRepository.backfillContentMetadata(BATCH_SIZE);
+        if (backfilledCount < BATCH_SIZE) {
+            backfilledCount += chapterImageRepository.backfillContentMetadata(BATCH_SIZE - backfilledCount);
+        }
+
+        if (backfilledCount > 0) {
+            log.info("Backfilled content metadata of {} images", backfilledCount);
+        }
+    }
+
+    // This method computes the CRC-32 of a chapter image stored in the blob store and saves it.
+    private boolean computeCrc32(ChapterImageExport image) {
+        try {
+            chapterImageRepository.updateCrc32(image.getId(), imageStorageService.computeCrc32(image));
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to compute the CRC-32 of chapter image {}", image.getId(), e);
+            return false;
+        }
+    }
+
+    // This method moves the thumbnail data of a comic to the blob store.
+    // The blob is written before the row is updated, so the thumbnail can be served at any time.
+    private boolean migrateThumbnail(Long comicId) {
+        try {
+            Optional<byte[]> imageData = comicThumbnailRepository.findImageDataByComicId(comicId);
+            if (imageData.isEmpty()) {
+                return false;
+            }
+
+            StoredImage storedImage = imageStorageService.store(imageData.get());
+            return comicThumbnailRepository.markMovedToBlobStore(
+                            comicId,
+                            storedImage.getContentHash(),
+                            storedImage.getContentType(),
+                            storedImage.getByteSize(),
+                            storedImage.getWidth(),
+                            storedImage.getHeight())
+                    > 0;
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to move the thumbnail of comic {} to the blob store", comicId, e);
+            return false;
+        }
+    }
+
+    // This method moves the data of a chapter image to the blob store.
+    // The blob is written before the row is updated, so the image can be served at any time.
+    private boolean migrateChapterImage(Long imageId) {
+        try {
+            Optional<byte[]> imageData = chapterImageRepository.findImageDataById(imageId);
+            if (imageData.isEmpty()) {
+                return false;
+            }
+
+            StoredImage storedImage = imageStorageService.store(imageData.get());
+            return chapterImageRepository.markMovedToBlobStore(
+                            imageId,
+                            storedImage.getContentHash(),
+                            storedImage.getContentType(),
+                            storedImage.getByteSize(),
+                            storedImage.getWidth(),
+                            storedImage.getHeight(),
+                            storedImage.getCrc32())
+                    > 0;
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to move chapter image {} to the blob store", imageId, e);
+            return false;
+        }
+    }
+}
@@ -16,13 +16,10 @@ import org.springframework.stereotype.Service;
 import com.api.comic_reader.dtos.responses.BookmarkResponse;
 import com.api.comic_reader.dtos.responses.ChapterResponse;
 import com.api.comic_reader.entities.BookmarkEntity;
-import com.api.comic_reader.entities.ComicEntity;
 import com.api.comic_reader.entities.UserEntity;
-import com.api.comic_reader.entities.composite_keys.BookmarkKey;
 import com.api.comic_reader.exception.AppException;
 import com.api.comic_reader.exception.ErrorCode;
 import com.api.comic_reader.repositories.BookmarkRepository;
-import com.api.comic_reader.repositories.ComicRepository;
 import com.api.comic_reader.repositories.UserRepository;
 
 import lombok.RequiredArgsConstructor;
@@ -31,15 +28,17 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 @EnableMethodSecurity()
 public class BookmarkService {
+    // The results of the bookmark statements of BookmarkRepository
+    private static final String ADDED = "ADDED";
+    private static final String REMOVED = "REMOVED";
+    private static final String NOT_FOUND = "NOT_FOUND";
+
     @Autowired
     private BookmarkRepository bookmarkRepository;
 
     @Autowired
     private UserRepository userRepository;
 
-    @Autowired
-    private ComicRepository comicRepository;
-
     @Autowired
     private ChapterService chapterService;
 
@@ -47,45 +46,46 @@ public class BookmarkService {
     private String BASE_URL;
 
     // This method allows a user to bookmark a comic.
-    // It checks if the user and comic exist.
     // If the user has not bookmarked the comic, it saves the bookmark to the database and returns true.
     // If the user has bookmarked the comic, it deletes the bookmark from the database and returns false.
+    // The bookmark is toggled by a single statement, so a concurrent toggle cannot fail on a duplicate bookmark.
+    // It throws an exception if the user or the comic is not found.
     @Transactional
     @PreAuthorize("hasAuthority('SCOPE_USER') or hasAuthority('SCOPE_ADMIN')")
     public boolean bookmarkComic(Long comicId) throws AppException {
-        var context = SecurityContextHolder.getContext();
-        String name = context.getAuthentication().getName();
+        String name = SecurityContextHolder.getContext().getAuthentication().getName();
 
-        // Check if user exists
-        Optional<UserEntity> user = userRepository.findByUsername(name);
+        String status = bookmarkRepository.toggleBookmark(name, comicId);
+        checkFound(status, name);
+        return !REMOVED.equals(status);
+    }
 
-        if (user.isEmpty()) {
-            throw new AppException(ErrorCode.USER_NOT_FOUND);
-        }
+    // This method adds a comic to the bookmarks of the user, if it is not there yet.
+    // Unlike bookmarkComic, repeating it does not remove the bookmark, so it can be retried safely.
+    // It returns whether the bookmark was added.
+    // It throws an exception if the user or the comic is not found.
+    @Transactional
+    @PreAuthorize("hasAuthority('SCOPE_USER') or hasAuthority('SCOPE_ADMIN')")
+    public boolean addBookmark(Long comicId) throws AppException {
+        String name = SecurityContextHolder.getContext().getAuthentication().getName();
 
-        // Check if chapter exists
-        Optional<ComicEntity> comic = comicRepository.findById(comicId);
+        String status = bookmarkRepository.insertBookmark(name, comicId);
+        checkFound(status, name);
+        return ADDED.equals(status);
+    }
 
-        if (comic.isEmpty()) {
-            throw new AppException(ErrorCode.COMIC_NOT_FOUND);
-        }
+    // This method removes a comic from the bookmarks of the user, if it is there.
+    // Repeating it does not add the bookmark back, so it can be retried safely.
+    // It returns whether the bookmark was removed.
+    // It throws an exception if the user or the comic is not found.
+    @Transactional
+    @PreAuthorize("hasAuthority('SCOPE_USER') or hasAuthority('SCOPE_ADMIN')")
+    public boolean removeBookmark(Long comicId) throws AppException {
+        String name = SecurityContextHolder.getContext().getAuthentication().getName();
 
-        // Check if user has bookmarked this chapter before
-        if (!bookmarkRepository.existsByComicAndUser(comic.get(), user.get())) {
-            BookmarkKey id = new BookmarkKey();
-            id.setComicId(comic.get().getId());
-            id.setUserId(user.get().getId());
-
-            bookmarkRepository.save(BookmarkEntity.builder()
-                    .id(id)
-                    .comic(comic.get())
-                    .user(user.get())
-                    .build());
-            return true;
-        } else {
-            bookmarkRepository.deleteByComicAndUser(comic.get(), user.get());
-            return false;
-        }
+        String status = bookmarkRepository.deleteBookmark(name, comicId);
+        checkFound(status, name);
+        return REMOVED.equals(status);
     }
 
     // This method returns all bookmarks of the current user.
@@ -123,4 +123,16 @@ public class BookmarkService {
                 })
                 .collect(Collectors.toList());
     }
+
+    // This method throws the matching exception when a bookmark statement did not find the user or the comic.
+    // The user is only looked up in that case, to tell which of them is missing.
+    private void checkFound(String status, String username) throws AppException {
+        if (!NOT_FOUND.equals(status)) {
+            return;
+        }
+        if (userRepository.findByUsername(username).isEmpty()) {
+            throw new AppException(ErrorCode.USER_NOT_FOUND);
+        }
+        throw new AppException(ErrorCode.COMIC_NOT_FOUND);
+    }
 }
@@ -0,0 +1,168 @@
+package com.api.comic_reader.services;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.api.comic_reader.entities.ChapterEntity;
+import com.api.comic_reader.entities.ComicEntity;
+import com.api.comic_reader.exception.AppException;
+import com.api.comic_reader.exception.ErrorCode;
+import com.api.comic_reader.repositories.ChapterImageRepository;
+import com.api.comic_reader.repositories.ChapterRepository;
+import com.api.comic_reader.repositories.ComicRepository;
+import com.api.comic_reader.repositories.projections.ChapterImageExport;
+import com.api.comic_reader.repositories.projections.ImageMetadata;
+import com.api.comic_reader.storage.StoredZipArchive;
+
+import lombok.RequiredArgsConstructor;
+
+@Service
+@RequiredArgsConstructor
+public class ChapterExportService {
+    // This service builds the CBZ archives that readers download to read chapters offline.
+    // An archive is described from the database only, its pages are read from storage while it is streamed.
+    // The CRC-32 of the images uploaded before it was saved is computed by BlobMigrationService in the background, an
+    // archive holding such an image is refused until then.
+
+    private static final String CBZ_CONTENT_TYPE = "application/vnd.comicbook+zip";
+
+    @Autowired
+    private ComicRepository comicRepository;
+
+    @Autowired
+    private ChapterRepository chapterRepository;
+
+    @Autowired
+    private ChapterImageRepository chapterImageRepository;
+
+    @Autowired
+    private ImageStorageService imageStorageService;
+
+    @Value("${app.chapter-export.max-chapters}")
+    private int MAX_CHAPTERS;
+
+    // This method returns the CBZ archive of a chapter with the given ID.
+    // It checks if the chapter exists and has images.
+    // The pages are at the root of the archive, named by their order.
+    public StoredZipArchive exportChapter(Long chapterId) throws AppException {
+        Optional<ChapterEntity> chapterOptional = chapterRepository.findById(chapterId);
+        if (chapterOptional.isEmpty() || chapterOptional.get().getComic().getIsDeleted()) {
+            throw new AppException(ErrorCode.CHAPTER_NOT_FOUND);
+        }
+
+        return buildArchive(List.of(chapterOptional.get()), false);
+    }
+
+    // This method returns the CBZ archive of the chapters of a comic whose number is in the given range.
+    // It checks if the comic exists and if the range holds at most app.chapter-export.max-chapters chapters.
+    // Each chapter is a folder of the archive, so the archive can be imported again.
+    public StoredZipArchive exportChapters(Long comicId, Long fromNumber, Long toNumber) throws AppException {
+        Optional<ComicEntity> comicOptional = comicRepository.findById(comicId);
+        if (comicOptional.isEmpty() || comicOptional.get().getIsDeleted()) {
+            throw new AppException(ErrorCode.COMIC_NOT_FOUND);
+        }
+
+        List<ChapterEntity> chapters = chapterRepository.findByComicIdAndChapterNumberRange(
+                comicId, (fromNumber == null) ? 0L : fromNumber, (toNumber == null) ? Long.MAX_VALUE : toNumber);
+        if (chapters.isEmpty()) {
+            throw new AppException(ErrorCode.COMIC_CHAPTERS_NOT_FOUND);
+        }
+        if (chapters.size() > MAX_CHAPTERS) {
+            throw new AppException(ErrorCode.ARCHIVE_TOO_LARGE);
+        }
+
+        return buildArchive(chapters, true);
+    }
+
+    // This method returns the metadata of an archive, so it can be served like an image.
+    public ImageMetadata getArchiveMetadata(StoredZipArchive archive) {
+        return new ImageMetadata() {
+            @Override
+            public String getContentHash() {
+                return archive.getContentHash();
+            }
+
+            @Override
+            public String getContentType() {
+                return CBZ_CONTENT_TYPE;
+            }
+
+            @Override
+            public Long getByteSize() {
+                return archive.getSize();
+            }
+
+            @Override
+            public Boolean getIsStoredInDatabase() {
+                return false;
+            }
+        };
+    }
+
+    // This method lays out the pages of the given chapters in an archive.
+    // It throws an exception if the CRC-32 of an image has not been computed yet.
+    private StoredZipArchive buildArchive(List<ChapterEntity> chapters, boolean chapterFolders) {
+        Map<Long, ChapterEntity> chaptersById =
+                chapters.stream().collect(Collectors.toMap(ChapterEntity::getId, Function.identity()));
+        List<ChapterImageExport> images =
+                chapterImageRepository.findExportsByChapterIds(new ArrayList<>(chaptersById.keySet()));
+        if (images.isEmpty()) {
+            throw new AppException(ErrorCode.CHAPTER_IMAGES_NOT_FOUND);
+        }
+        if (images.stream().anyMatch(image -> image.getCrc32() == null)) {
+            throw new AppException(ErrorCode.ARCHIVE_NOT_READY);
+        }
+
+        // The images are ordered by chapter ID, the entries by chapter number
+        Map<Long, List<ChapterImageExport>> imagesByChapterId =
+                images.stream().collect(Collectors.groupingBy(ChapterImageExport::getChapterId));
+
+        List<StoredZipArchive.Entry> entries = new ArrayList<>();
+        for (ChapterEntity chapter : chapters) {
+            List<ChapterImageExport> chapterImages = imagesByChapterId.getOrDefault(chapter.getId(), List.of());
+            String folder = chapterFolders ? String.format("Chapter %04d/", chapter.getChapterNumber()) : "";
+            LocalDateTime modifiedAt =
+                    LocalDateTime.ofInstant(chapter.getCreatedAt().toInstant(), ZoneOffset.UTC);
+
+            for (int i = 0; i < chapterImages.size(); i++) {
+                ChapterImageExport image = chapterImages.get(i);
+                entries.add(StoredZipArchive.Entry.builder()
+                        .name(folder + String.format("%03d", i + 1) + extensionOf(image.getContentType()))
+                        .size(image.getByteSize())
+                        .crc32(image.getCrc32())
+                        .modifiedAt(modifiedAt)
+                        .contentHash(image.getContentHash())
+                        .data((offset, length, output) ->
+                                imageStorageService.writeChapterImage(image.getId(), image, offset, length, output))
+                        .build());
+            }
+        }
+
+        try {
+            return new StoredZipArchive(entries);
+        } catch (IllegalArgumentException e) {
+            throw new AppException(ErrorCode.ARCHIVE_TOO_LARGE);
+        }
+    }
+
+    // This method returns the file extension of a content type, with its dot.
+    private String extensionOf(String contentType) {
+        return switch (contentType) {
+            case "image/jpeg" -> ".jpg";
+            case "image/png" -> ".png";
+            case "image/gif" -> ".gif";
+            case "image/webp" -> ".webp";
+            default -> ".bin";
+        };
+    }
+}
@@ -1,5 +1,10 @@
 package com.api.comic_reader.services;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -9,20 +14,30 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
 
 import com.api.comic_reader.dtos.requests.ChapterImageRequest;
+import com.api.comic_reader.dtos.responses.ChapterImageUploadResponse;
+import com.api.comic_reader.dtos.responses.ChapterPageResponse;
 import com.api.comic_reader.dtos.responses.ChapterResponse;
+import com.api.comic_reader.dtos.responses.ImageCacheStatsResponse;
 import com.api.comic_reader.entities.ChapterEntity;
-import com.api.comic_reader.entities.ChapterImageEntity;
-import com.api.comic_reader.entities.ComicEntity;
 import com.api.comic_reader.exception.AppException;
 import com.api.comic_reader.exception.ErrorCode;
+import com.api.comic_reader.repositories.ChapterImageBatchRepository;
 import com.api.comic_reader.repositories.ChapterImageRepository;
 import com.api.comic_reader.repositories.ChapterRepository;
-import com.api.comic_reader.repositories.ComicRepository;
+import com.api.comic_reader.repositories.projections.ChapterImageExport;
+import com.api.comic_reader.repositories.projections.ChapterImageSummary;
+import com.api.comic_reader.repositories.projections.ImageMetadata;
+import com.api.comic_reader.storage.MultipartBundle;
+import com.api.comic_reader.storage.StoredImage;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
+@Slf4j
 @Service
 @EnableMethodSecurity()
 @RequiredArgsConstructor
@@ -30,47 +45,113 @@ public class ChapterImageService {
     @Autowired
     private ChapterImageRepository chapterImageRepository;
 
+    @Autowired
+    private ChapterImageBatchRepository chapterImageBatchRepository;
+
     @Autowired
     private ChapterRepository chapterRepository;
 
     @Autowired
-    private ComicRepository comicRepository;
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ImageStorageService imageStorageService;
+
+    @Autowired
+    private ViewCountService viewCountService;
+
+    @Autowired
+    private TrendingService trendingService;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
 
     @Value("${app.base-url}")
     private String BASE_URL;
 
-    // This method allows an admin to insert images into a chapter.
+    @Value("${app.chapter-bundle.max-pages}")
+    private int BUNDLE_MAX_PAGES;
+
+    // This method allows an admin to insert images into a chapter, in the order of the given files.
     // It checks if the chapter exists.
-    // It saves the new images to the database.
+    // It saves the data of each image to the blob store first, outside of any transaction.
+    // Then it locks the chapter, reserves the range of image orders once, and inserts all stored images with a single
+    // JDBC batch, so an upload takes a constant number of round trips and concurrent uploads cannot take the same
+    // orders.
+    // It returns the result of each file: the ID and order of the image, or why it was not inserted.
     @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
-    public void insertChapterImages(ChapterImageRequest newChapterImage) throws AppException {
-        Optional<ChapterEntity> chapterOptional = chapterRepository.findById(newChapterImage.getChapterId());
-        if (chapterOptional.isEmpty()) {
+    public List<ChapterImageUploadResponse> insertChapterImages(ChapterImageRequest newChapterImages)
+            throws AppException {
+        Long chapterId = newChapterImages.getChapterId();
+        if (!chapterRepository.existsById(chapterId)) {
             throw new AppException(ErrorCode.CHAPTER_NOT_FOUND);
         }
-        ChapterEntity chapter = chapterOptional.get();
+
+        List<ChapterImageUploadResponse> results = new ArrayList<>();
+        List<ChapterImageUploadResponse> storedResults = new ArrayList<>();
+        List<StoredImage> storedImages = new ArrayList<>();
+        for (MultipartFile imageData : newChapterImages.getImageDataList()) {
+            ChapterImageUploadResponse result = ChapterImageUploadResponse.builder()
+                    .fileName(imageData.getOriginalFilename())
+                    .success(false)
+                    .build();
+            results.add(result);
+
+            if (imageData.isEmpty()) {
+                result.setMessage("Image is empty");
+                continue;
+            }
+            try (InputStream input = imageData.getInputStream()) {
+                storedImages.add(imageStorageService.store(input));
+                storedResults.add(result);
+            } catch (AppException e) {
+                result.setMessage(e.getMessage());
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to store image {} of chapter {}", imageData.getOriginalFilename(), chapterId, e);
+                result.setMessage("Image could not be stored");
+            }
+        }
+
+        if (storedImages.isEmpty()) {
+            return results;
+        }
+
         try {
-            // Find the highest image order for this chapter
-            Long maxOrder = chapterImageRepository.findMaxImageOrder(newChapterImage.getChapterId());
+            transactionTemplate.executeWithoutResult(status -> {
+                chapterRepository
+                        .findByIdForUpdate(chapterId)
+                        .orElseThrow(() -> new AppException(ErrorCode.CHAPTER_NOT_FOUND));
 
-            // If there is no image in this chapter, set the order to 1
-            Long imageOrder = (maxOrder == null) ? 1 : maxOrder + 1;
+                // Find the highest image order for this chapter, if there is no image the orders start at 1
+                Long maxOrder = chapterImageRepository.findMaxImageOrder(chapterId);
+                long firstOrder = (maxOrder == null) ? 1 : maxOrder + 1;
 
-            ChapterImageEntity chapterImage = ChapterImageEntity.builder()
-                    .imageData(newChapterImage.getImageData().getBytes())
-                    .chapter(chapter)
-                    .imageOrder(imageOrder)
-                    .build();
-            chapterImageRepository.save(chapterImage);
-        } catch (Exception e) {
+                List<Long> imageIds =
+                        chapterImageBatchRepository.insertChapterImages(chapterId, firstOrder, storedImages);
+                for (int i = 0; i < storedResults.size(); i++) {
+                    ChapterImageUploadResponse result = storedResults.get(i);
+                    result.setSuccess(true);
+                    result.setImageId(imageIds.get(i));
+                    result.setImageOrder(firstOrder + i);
+                }
+            });
+        } catch (AppException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            log.error("Failed to insert {} images into chapter {}", storedImages.size(), chapterId, e);
             throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION);
         }
+
+        return results;
     }
 
     // This method returns the URLs of all images of a chapter with the given ID.
     // It checks if the chapter exists.
-    // It increases the view count of the comic.
-    // It maps each image to a URL and returns them in a ChapterResponse object.
+    // It records a view of the comic, which is written to the database later in a batch, and a read of the comic
+    // for the trending ranking, which is only kept in memory.
+    // It maps each image to a URL and returns them in a ChapterResponse object, along with a manifest of the pages.
+    // The manifest gives the dimensions, size, hash, type and placeholder of each page, all computed at upload time,
+    // so clients can lay out the chapter before the images arrive.
     @Transactional
     public ChapterResponse getChapterImageUrls(Long chapterId) {
         Optional<ChapterEntity> chapterOptional = chapterRepository.findById(chapterId);
@@ -79,15 +160,25 @@ public class ChapterImageService {
         }
         ChapterEntity chapter = chapterOptional.get();
 
-        // Increase the view count of the comic
-        ComicEntity comic = chapter.getComic();
-        comicRepository.increaseView(comic);
+        // Record a view of the comic
+        viewCountService.increaseView(chapter.getComic().getId());
+        trendingService.recordRead(chapter.getComic().getId());
 
-        List<ChapterImageEntity> chapterImages = chapterImageRepository.findByChapter(chapter);
+        // Only the metadata of the images is needed, the image data is not loaded
+        List<ChapterImageSummary> chapterImages = chapterImageRepository.findSummariesByChapterId(chapterId);
 
-        List<String> imageUrls = chapterImages.stream()
-                .map(chapterImage -> BASE_URL + "/api/image/" + chapterImage.getId())
+        List<ChapterPageResponse> pages = chapterImages.stream()
+                .map(chapterImage -> ChapterPageResponse.builder()
+                        .url(BASE_URL + "/api/image/" + chapterImage.getId())
+                        .width(chapterImage.getWidth())
+                        .height(chapterImage.getHeight())
+                        .byteSize(chapterImage.getByteSize())
+                        .contentHash(chapterImage.getContentHash())
+                        .contentType(chapterImage.getContentType())
+                        .placeholder(chapterImage.getPlaceholder())
+                        .build())
                 .toList();
+        List<String> imageUrls = pages.stream().map(ChapterPageResponse::getUrl).toList();
 
         return ChapterResponse.builder()
                 .id(chapterId)
@@ -95,31 +186,112 @@ public class ChapterImageService {
                 .chapterNumber(chapter.getChapterNumber())
                 .createdAt(chapter.getCreatedAt().toString())
                 .imageUrls(imageUrls)
+                .pages(pages)
                 .build();
     }
 
-    // This method returns the image data of an image with the given ID.
-    // It checks if the image exists.
-    public byte[] getImageFromImageId(Long imageId) {
-        Optional<ChapterImageEntity> chapterImageOptional = chapterImageRepository.findById(imageId);
-        if (chapterImageOptional.isEmpty()) {
+    // This method returns the pages of a chapter with the given ID as one multipart/mixed bundle, so a reader loads a
+    // chapter with one request instead of one request per page.
+    // It checks if the chapter exists and has images.
+    // The window starts at the given page (1 by default) and holds at most the given number of pages, capped at
+    // app.chapter-bundle.max-pages.
+    // The pages are found with one ordered query and are read one after the other while the bundle is streamed.
+    // Each part carries the URL, ETag and order of its page, so clients can cache the pages individually.
+    public MultipartBundle getChapterBundle(Long chapterId, Integer fromPage, Integer pageCount) throws AppException {
+        if (!chapterRepository.existsById(chapterId)) {
+            throw new AppException(ErrorCode.CHAPTER_NOT_FOUND);
+        }
+
+        long offset = (fromPage == null || fromPage < 1) ? 0 : fromPage - 1L;
+        int limit = (pageCount == null || pageCount < 1) ? BUNDLE_MAX_PAGES : Math.min(pageCount, BUNDLE_MAX_PAGES);
+        List<ChapterImageExport> images = chapterImageRepository.findPageWindowByChapterId(chapterId, offset, limit);
+        if (images.isEmpty()) {
             throw new AppException(ErrorCode.CHAPTER_IMAGES_NOT_FOUND);
         }
-        ChapterImageEntity chapterImage = chapterImageOptional.get();
-        return chapterImage.getImageData();
+
+        List<MultipartBundle.Part> parts = new ArrayList<>();
+        for (int i = 0; i < images.size(); i++) {
+            ChapterImageExport image = images.get(i);
+            parts.add(MultipartBundle.Part.builder()
+                    .contentType(image.getContentType())
+                    .size(image.getByteSize())
+                    .contentHash(image.getContentHash())
+                    .header("Content-Location", BASE_URL + "/api/image/" + image.getId())
+                    .header("ETag", "\"" + image.getContentHash() + "\"")
+                    .header("X-Page-Number", String.valueOf(offset + i + 1))
+                    .data((from, length, output) ->
+                            imageStorageService.writeChapterImage(image.getId(), image, from, length, output))
+                    .build());
+        }
+        return new MultipartBundle(parts);
+    }
+
+    // This method returns the metadata of a bundle, so it can be served like an image.
+    public ImageMetadata getBundleMetadata(MultipartBundle bundle) {
+        return new ImageMetadata() {
+            @Override
+            public String getContentHash() {
+                return bundle.getContentHash();
+            }
+
+            @Override
+            public String getContentType() {
+                return bundle.getContentType();
+            }
+
+            @Override
+            public Long getByteSize() {
+                return bundle.getSize();
+            }
+
+            @Override
+            public Boolean getIsStoredInDatabase() {
+                return false;
+            }
+        };
+    }
+
+    // This method returns the hash, content type and size of an image with the given ID.
+    // It checks if the image exists.
+    // If a width is requested, it returns the smallest variant of the image that is at least that wide, if any.
+    // It does not read the image data.
+    public ImageVariantService.VariantSelection getImageMetadata(Long imageId, Integer requestedWidth)
+            throws AppException {
+        ImageMetadata metadata = chapterImageRepository
+                .findMetadataById(imageId)
+                .orElseThrow(() -> new AppException(ErrorCode.CHAPTER_IMAGES_NOT_FOUND));
+        return imageVariantService.selectVariant(metadata, requestedWidth);
+    }
+
+    // This method returns the local file of an image, so it can be sent without copying it through the JVM.
+    // It returns null if the image is not stored on the local filesystem.
+    public Path getImageFile(ImageMetadata metadata) {
+        return imageStorageService.getLocalFile(metadata);
+    }
+
+    // This method writes a range of the data of an image with the given ID to the given output stream.
+    public void writeImageData(
+            Long imageId, ImageMetadata metadata, long offset, long length, OutputStream outputStream)
+            throws IOException {
+        imageStorageService.writeChapterImage(imageId, metadata, offset, length, outputStream);
+    }
+
+    // This method allows an admin to read the statistics of the off-heap image cache.
+    @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
+    public ImageCacheStatsResponse getImageCacheStats() {
+        return imageStorageService.getCacheStats();
     }
 
     // This method allows an admin to delete all images of a chapter with the given ID.
     // It checks if the chapter exists.
-    // It deletes all images from the database.
+    // It deletes all images from the database in a single statement, without loading them, and removes them from
+    // the image cache.
     @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
-    public void deleteChapterImages(Long imageId) {
-        Optional<ChapterEntity> chapterOptional = chapterRepository.findById(imageId);
-        if (chapterOptional.isEmpty()) {
+    public void deleteChapterImages(Long chapterId) {
+        if (!chapterRepository.existsById(chapterId)) {
             throw new AppException(ErrorCode.CHAPTER_NOT_FOUND);
         }
-        List<ChapterImageEntity> chapterImages = chapterImageRepository.findByChapter(chapterOptional.get());
 
-        chapterImageRepository.deleteAll(chapterImages);
+        imageStorageService.deleteChapterImages(chapterId);
     }
 }
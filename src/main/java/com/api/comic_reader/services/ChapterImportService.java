@@ -0,0 +1,379 @@
+package com.api.comic_reader.services;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.api.comic_reader.dtos.requests.ChapterImportManifest;
+import com.api.comic_reader.dtos.responses.ChapterImportResponse;
+import com.api.comic_reader.entities.ChapterEntity;
+import com.api.comic_reader.entities.ComicEntity;
+import com.api.comic_reader.exception.AppException;
+import com.api.comic_reader.exception.ErrorCode;
+import com.api.comic_reader.repositories.ChapterImageBatchRepository;
+import com.api.comic_reader.repositories.ChapterRepository;
+import com.api.comic_reader.repositories.ComicRepository;
+import com.api.comic_reader.storage.SpooledUpload;
+import com.api.comic_reader.storage.StoredImage;
+import com.api.comic_reader.utils.DateUtil;
+import com.api.comic_reader.utils.NaturalSortUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+@EnableMethodSecurity()
+@RequiredArgsConstructor
+public class ChapterImportService {
+    // This service imports chapters from a CBZ/ZIP archive.
+    // The archive is read once, sequentially, and each page is copied to a temporary file while it is hashed.
+    // The pages are then checked and stored on a bounded fork-join pool.
+    // At most app.chapter-import.max-pending-pages pages wait for the pool, and they wait on disk, so neither a
+    // large archive nor a large page fills the heap.
+    // The chapters and their images are then inserted in a single transaction.
+
+    private static final String MANIFEST_NAME = "manifest.json";
+
+    // The largest manifest that is read, a manifest only lists chapter numbers and titles
+    private static final int MAX_MANIFEST_BYTES = 1024 * 1024;
+
+    private static final Set<String> PAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "gif", "webp");
+
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("\\d+");
+
+    @Autowired
+    private ComicRepository comicRepository;
+
+    @Autowired
+    private ChapterRepository chapterRepository;
+
+    @Autowired
+    private ChapterImageBatchRepository chapterImageBatchRepository;
+
+    @Autowired
+    private ImageStorageService imageStorageService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.storage.upload.max-image-bytes}")
+    private long MAX_IMAGE_BYTES;
+
+    @Value("${app.chapter-import.threads}")
+    private int THREADS;
+
+    @Value("${app.chapter-import.max-pending-pages}")
+    private int MAX_PENDING_PAGES;
+
+    @Value("${app.chapter-import.max-pages}")
+    private int MAX_PAGES;
+
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    void startPool() {
+        pool = new ForkJoinPool(THREADS);
+    }
+
+    @PreDestroy
+    void stopPool() {
+        pool.shutdown();
+    }
+
+    // This method allows an admin to import chapters into a comic from a CBZ/ZIP archive.
+    // It checks if the comic exists and is not finished.
+    // Each top-level folder of the archive is a chapter, and so are the pages at its root. Pages are ordered by the
+    // natural order of their file names, so "10.jpg" comes after "9.jpg".
+    // The number and title of a chapter come from manifest.json if it lists the folder, from the given parameters if
+    // the archive holds a single chapter, or else from the last number in the folder name.
+    // It returns each imported chapter with the files that were skipped.
+    @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
+    public List<ChapterImportResponse> importChapters(
+            Long comicId, MultipartFile archive, Long chapterNumber, String title) throws AppException {
+        Optional<ComicEntity> comicOptional = comicRepository.findById(comicId);
+        if (comicOptional.isEmpty() || comicOptional.get().getIsDeleted()) {
+            throw new AppException(ErrorCode.COMIC_NOT_FOUND);
+        }
+        if (comicOptional.get().getIsFinished()) {
+            throw new AppException(ErrorCode.COMIC_ALREADY_FINISHED);
+        }
+        ComicEntity comic = comicOptional.get();
+
+        ArchiveContent content = readArchive(archive);
+        if (content.pagesByFolder.isEmpty()) {
+            throw new AppException(ErrorCode.INVALID_ARCHIVE);
+        }
+        List<ChapterPlan> plans = planChapters(content, chapterNumber, title);
+
+        // Wait for the pages of each chapter, in page order
+        for (ChapterPlan plan : plans) {
+            plan.pages.sort((left, right) -> NaturalSortUtil.compare(left.name, right.name));
+            for (ArchivePage page : plan.pages) {
+                StoredImage storedImage = awaitPage(page);
+                if (storedImage == null) {
+                    plan.skippedFiles.add(page.name + ": " + page.error);
+                } else {
+                    plan.storedImages.add(storedImage);
+                }
+            }
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                // The chapters are created in order, one millisecond apart, so the last one is the last chapter
+                long createdAt = DateUtil.getCurrentDate().getTime();
+                for (ChapterPlan plan : plans) {
+                    if (plan.storedImages.isEmpty()) {
+                        continue;
+                    }
+                    ChapterEntity chapter = chapterRepository.save(ChapterEntity.builder()
+                            .title(plan.title)
+                            .chapterNumber(plan.chapterNumber)
+                            .comic(comic)
+                            .createdAt(new Date(createdAt++))
+                            .build());
+                    chapterImageBatchRepository.insertChapterImages(chapter.getId(), 1, plan.storedImages);
+                    plan.chapterId = chapter.getId();
+                }
+                comicRepository.refreshLastChapterAt(comicId);
+            });
+        } catch (RuntimeException e) {
+            log.error("Failed to import {} chapters into comic {}", plans.size(), comicId, e);
+            throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION);
+        }
+
+        return plans.stream()
+                .map(plan -> ChapterImportResponse.builder()
+                        .chapterId(plan.chapterId)
+                        .chapterNumber(plan.chapterNumber)
+                        .title(plan.title)
+                        .pageCount(plan.storedImages.size())
+                        .skippedFiles(plan.skippedFiles)
+                        .build())
+                .toList();
+    }
+
+    // This method reads the entries of an archive in order and submits each page to the pool as soon as it is copied
+    // to a temporary file.
+    // It blocks while too many pages wait for the pool.
+    private ArchiveContent readArchive(MultipartFile archive) {
+        ArchiveContent content = new ArchiveContent();
+        Semaphore pendingPages = new Semaphore(MAX_PENDING_PAGES);
+        int pageCount = 0;
+
+        try (ZipInputStream zip = new ZipInputStream(archive.getInputStream())) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (entry.isDirectory() || isIgnored(name)) {
+                    continue;
+                }
+                if (name.equalsIgnoreCase(MANIFEST_NAME)) {
+                    content.manifest =
+                            objectMapper.readValue(zip.readNBytes(MAX_MANIFEST_BYTES), ChapterImportManifest.class);
+                    continue;
+                }
+                if (!PAGE_EXTENSIONS.contains(extensionOf(name))) {
+                    continue;
+                }
+                if (++pageCount > MAX_PAGES) {
+                    throw new AppException(ErrorCode.INVALID_ARCHIVE);
+                }
+
+                ArchivePage page = new ArchivePage(name);
+                content.pagesByFolder
+                        .computeIfAbsent(folderOf(name), folder -> new ArrayList<>())
+                        .add(page);
+
+                // Spooling stops one byte after the limit, and does not close the archive stream
+                SpooledUpload upload = SpooledUpload.spool(zip, MAX_IMAGE_BYTES);
+                if (upload.isTruncated()) {
+                    upload.close();
+                    page.error = ErrorCode.IMAGE_TOO_LARGE.getMessage();
+                    continue;
+                }
+
+                try {
+                    pendingPages.acquire();
+                } catch (InterruptedException e) {
+                    upload.close();
+                    throw e;
+                }
+                page.task = pool.submit(() -> {
+                    try (upload) {
+                        return imageStorageService.store(upload);
+                    } finally {
+                        pendingPages.release();
+                    }
+                });
+            }
+        } catch (IOException e) {
+            log.error("Failed to read chapter archive {}", archive.getOriginalFilename(), e);
+            throw new AppException(ErrorCode.INVALID_ARCHIVE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION);
+        }
+        return content;
+    }
+
+    // This method waits for a page to be stored.
+    // It returns null, and sets the error of the page, if the page could not be stored.
+    private StoredImage awaitPage(ArchivePage page) {
+        if (page.task == null) {
+            return null;
+        }
+        try {
+            return page.task.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AppException appException) {
+                page.error = appException.getMessage();
+            } else {
+                log.error("Failed to store page {} of a chapter archive", page.name, e.getCause());
+                page.error = "Image could not be stored";
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION);
+        }
+    }
+
+    // This method gives a number and a title to the chapter of each folder, and orders the chapters by number.
+    // It throws an exception if the number of a chapter cannot be found.
+    private List<ChapterPlan> planChapters(ArchiveContent content, Long chapterNumber, String title) {
+        Map<String, ChapterImportManifest.Chapter> manifestChapters = new HashMap<>();
+        if (content.manifest != null && content.manifest.getChapters() != null) {
+            for (ChapterImportManifest.Chapter chapter : content.manifest.getChapters()) {
+                if (chapter.getFolder() != null) {
+                    manifestChapters.put(trimSlashes(chapter.getFolder()), chapter);
+                }
+            }
+        }
+        boolean singleChapter = content.pagesByFolder.size() == 1;
+
+        List<ChapterPlan> plans = new ArrayList<>();
+        for (Map.Entry<String, List<ArchivePage>> folder : content.pagesByFolder.entrySet()) {
+            ChapterPlan plan = new ChapterPlan(folder.getValue());
+            ChapterImportManifest.Chapter manifestChapter = manifestChapters.get(folder.getKey());
+
+            if (manifestChapter != null && manifestChapter.getChapterNumber() != null) {
+                plan.chapterNumber = manifestChapter.getChapterNumber();
+                plan.title = manifestChapter.getTitle();
+            } else if (singleChapter && chapterNumber != null) {
+                plan.chapterNumber = chapterNumber;
+                plan.title = title;
+            } else {
+                plan.chapterNumber = lastNumberOf(folder.getKey());
+            }
+
+            if (plan.chapterNumber == null || plan.chapterNumber < 0) {
+                throw new AppException(ErrorCode.INVALID_ARCHIVE);
+            }
+            if (plan.title == null || plan.title.isBlank()) {
+                plan.title = folder.getKey().isEmpty() ? "Chapter " + plan.chapterNumber : folder.getKey();
+            }
+            plans.add(plan);
+        }
+
+        plans.sort((left, right) -> Long.compare(left.chapterNumber, right.chapterNumber));
+        return plans;
+    }
+
+    // This method checks whether an entry is metadata added by an archiver, such as __MACOSX/ or .DS_Store.
+    private boolean isIgnored(String name) {
+        String fileName = name.substring(name.lastIndexOf('/') + 1);
+        return name.startsWith("__MACOSX/") || fileName.startsWith(".");
+    }
+
+    // This method returns the top-level folder of an entry, or an empty string for the entries at the root.
+    private String folderOf(String name) {
+        int slash = name.indexOf('/');
+        return (slash < 0) ? "" : name.substring(0, slash);
+    }
+
+    private String extensionOf(String name) {
+        int dot = name.lastIndexOf('.');
+        return (dot < 0) ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private String trimSlashes(String folder) {
+        return folder.replaceAll("^/+|/+$", "");
+    }
+
+    // This method returns the last number in a folder name, so "Vol 2 - Chapter 015" is chapter 15.
+    private Long lastNumberOf(String folder) {
+        Matcher matcher = NUMBER_PATTERN.matcher(folder);
+        Long number = null;
+        while (matcher.find()) {
+            try {
+                number = Long.parseLong(matcher.group());
+            } catch (NumberFormatException e) {
+                number = null;
+            }
+        }
+        return number;
+    }
+
+    // The pages and the manifest read from an archive, with the pages grouped by top-level folder
+    private static class ArchiveContent {
+        private final Map<String, List<ArchivePage>> pagesByFolder = new TreeMap<>(NaturalSortUtil.NATURAL_ORDER);
+        private ChapterImportManifest manifest;
+    }
+
+    // A page of an archive, being stored on the pool
+    private static class ArchivePage {
+        private final String name;
+        private Future<StoredImage> task;
+        private String error;
+
+        private ArchivePage(String name) {
+            this.name = name;
+        }
+    }
+
+    // A chapter to create, with its pages in order
+    private static class ChapterPlan {
+        private final List<ArchivePage> pages;
+        private final List<StoredImage> storedImages = new ArrayList<>();
+        private final List<String> skippedFiles = new ArrayList<>();
+        private Long chapterNumber;
+        private String title;
+        private Long chapterId;
+
+        private ChapterPlan(List<ArchivePage> pages) {
+            this.pages = pages;
+        }
+    }
+}
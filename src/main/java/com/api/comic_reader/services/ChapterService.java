@@ -8,6 +8,7 @@ import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.api.comic_reader.dtos.requests.ChapterRequest;
 import com.api.comic_reader.dtos.responses.ChapterResponse;
@@ -30,9 +31,12 @@ public class ChapterService {
     @Autowired
     private ChapterRepository chapterRepository;
 
+    @Autowired
+    private ImageStorageService imageStorageService;
+
     // This method allows an admin to insert a new chapter into a comic.
     // It checks if the comic exists and is not finished.
-    // It saves the new chapter to the database.
+    // It saves the new chapter to the database and updates the last chapter date of the comic.
     @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
     public void insertChapter(ChapterRequest newChapter) {
         Optional<ComicEntity> comicOptional = comicRepository.findById(newChapter.getComicId());
@@ -51,6 +55,7 @@ public class ChapterService {
                     .createdAt(DateUtil.getCurrentDate())
                     .build();
             chapterRepository.save(chapter);
+            comicRepository.refreshLastChapterAt(comic.getId());
         } catch (Exception e) {
             throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION);
         }
@@ -120,7 +125,9 @@ public class ChapterService {
 
     // This method allows an admin to delete a chapter with the given ID.
     // It checks if the chapter exists and if the comic is not finished.
-    // It deletes the chapter from the database.
+    // It deletes the images of the chapter in bulk, so their data is never loaded by the cascade.
+    // It deletes the chapter from the database and updates the last chapter date of the comic.
+    @Transactional
     @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
     public void deleteChapter(Long chapterId) {
         Optional<ChapterEntity> chapterOptional = chapterRepository.findById(chapterId);
@@ -131,7 +138,9 @@ public class ChapterService {
             throw new AppException(ErrorCode.COMIC_ALREADY_FINISHED);
         }
         ChapterEntity chapter = chapterOptional.get();
+        imageStorageService.deleteChapterImages(chapterId);
         chapterRepository.delete(chapter);
+        comicRepository.refreshLastChapterAt(chapter.getComic().getId());
     }
 
     // This method allows an admin to edit a chapter with the given ID.
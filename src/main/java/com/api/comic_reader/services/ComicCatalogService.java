@@ -0,0 +1,390 @@
+package com.api.comic_reader.services;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.api.comic_reader.dtos.requests.FilterGenresRequest;
+import com.api.comic_reader.dtos.responses.ChapterResponse;
+import com.api.comic_reader.dtos.responses.ComicGenreResponse;
+import com.api.comic_reader.dtos.responses.ComicPageResponse;
+import com.api.comic_reader.dtos.responses.ComicResponse;
+import com.api.comic_reader.enums.ComicSort;
+import com.api.comic_reader.enums.TrendingWindow;
+import com.api.comic_reader.exception.AppException;
+import com.api.comic_reader.exception.ErrorCode;
+import com.api.comic_reader.repositories.ComicGenreRepository;
+import com.api.comic_reader.repositories.ComicRepository;
+import com.api.comic_reader.repositories.projections.ComicCatalogView;
+import com.api.comic_reader.repositories.projections.ComicGenreView;
+import com.api.comic_reader.search.GenreBitmapIndex;
+import com.api.comic_reader.search.RatingLeaderboard;
+import com.api.comic_reader.utils.DateUtil;
+
+import lombok.RequiredArgsConstructor;
+
+@Service
+@RequiredArgsConstructor
+public class ComicCatalogService {
+    @Autowired
+    private ComicRepository comicRepository;
+
+    @Autowired
+    private ComicGenreRepository comicGenreRepository;
+
+    @Autowired
+    private ViewCountService viewCountService;
+
+    @Autowired
+    private ComicSearchService comicSearchService;
+
+    @Autowired
+    private ComicFilterService comicFilterService;
+
+    @Autowired
+    private ComicRankingService comicRankingService;
+
+    @Autowired
+    private TrendingService trendingService;
+
+    // The upper bound used as the position before the first page when sorting by last chapter date
+    private static final Date MAX_DATE = Timestamp.from(Instant.parse("9999-12-31T00:00:00Z"));
+
+    @Value("${app.base-url}")
+    private String BASE_URL;
+
+    @Value("${app.catalog.default-page-size}")
+    private int DEFAULT_PAGE_SIZE;
+
+    @Value("${app.catalog.max-page-size}")
+    private int MAX_PAGE_SIZE;
+
+    // This method returns all comics that are not deleted.
+    // It runs one query for the comics and their last chapters, and one query for their genres.
+    public List<ComicResponse> getCatalog() {
+        List<ComicCatalogView> comics = comicRepository.findCatalog();
+
+        if (comics.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        return toComicResponses(comics, comicGenreRepository.findGenresOfActiveComics());
+    }
+
+    // This method returns the comics that are not deleted and match the given keyword, best match first.
+    // The matching comics are found by the in-memory search index, only their catalog rows are read from the
+    // database, by primary key.
+    public List<ComicResponse> searchCatalog(String keyword) {
+        List<Long> comicIds = comicSearchService.search(keyword);
+        if (comicIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        return toComicResponses(findCatalogInOrder(comicIds));
+    }
+
+    // This method returns all comics that are not deleted and match the genre filter of the request, ordered by ID.
+    // The comics are found with the genre bitmaps and read from the database in one batch.
+    // A request without any genre or status filter returns no comics, rather than the whole catalog.
+    public List<ComicResponse> getCatalogByGenres(FilterGenresRequest request) {
+        if (isEmpty(request.getGenreIds())
+                && isEmpty(request.getAnyGenreIds())
+                && isEmpty(request.getExcludedGenreIds())
+                && request.getIsFinished() == null) {
+            return Collections.emptyList();
+        }
+
+        BitSet comicIds = comicFilterService.filter(request);
+        return toComicResponses(findCatalogInOrder(GenreBitmapIndex.page(comicIds, 0L, Integer.MAX_VALUE)));
+    }
+
+    // This method returns one page of the comics that are not deleted and match the filter of the request, ordered
+    // by ID.
+    // The page is cut from the genre bitmaps, only its comics are read from the database, in one batch.
+    // It throws an exception if the cursor is invalid.
+    public ComicPageResponse getCatalogPageByFilter(FilterGenresRequest request) throws AppException {
+        int pageSize = (request.getSize() == null || request.getSize() < 1)
+                ? DEFAULT_PAGE_SIZE
+                : Math.min(request.getSize(), MAX_PAGE_SIZE);
+
+        String[] position = decodeCursor(request.getCursor());
+        long afterId;
+        try {
+            afterId = (position == null) ? 0L : Long.parseLong(position[1]);
+        } catch (RuntimeException e) {
+            throw new AppException(ErrorCode.INVALID_CURSOR);
+        }
+
+        // Take one extra comic to know whether there is a next page
+        BitSet result = comicFilterService.filter(request);
+        List<Long> comicIds = GenreBitmapIndex.page(result, afterId, pageSize + 1);
+        boolean hasMore = comicIds.size() > pageSize;
+        if (hasMore) {
+            comicIds = comicIds.subList(0, pageSize);
+        }
+        List<ComicCatalogView> comics = findCatalogInOrder(comicIds);
+
+        return ComicPageResponse.builder()
+                .comics(toComicResponses(comics))
+                .nextCursor(hasMore ? encodePosition("", comicIds.get(comicIds.size() - 1)) : null)
+                .hasMore(hasMore)
+                .facets(Boolean.TRUE.equals(request.getIncludeFacets()) ? comicFilterService.facets(result) : null)
+                .build();
+    }
+
+    // This method returns all comics that are not deleted and have the given finished status.
+    public List<ComicResponse> getCatalogByFinished(boolean isFinished) {
+        return toComicResponses(comicRepository.findCatalogByFinished(isFinished));
+    }
+
+    // This method returns the given number of comics with the most recently created last chapter.
+    // It is served by a bounded top-N query, so its cost does not depend on the catalog size.
+    public List<ComicResponse> getLatestUpdatedCatalog(int limit) {
+        return toComicResponses(comicRepository.findLatestUpdatedCatalog(limit));
+    }
+
+    // This method returns the given number of most viewed comics that have at least one chapter.
+    // It is served by a bounded top-N query, so its cost does not depend on the catalog size.
+    public List<ComicResponse> getMostViewedCatalog(int limit) {
+        return toComicResponses(comicRepository.findMostViewedCatalog(limit));
+    }
+
+    // This method returns the trending comics of a window, most trending first.
+    // The ranking is taken from the last snapshot of the trending service, only its comics are read from the
+    // database, by primary key.
+    public List<ComicResponse> getTrendingCatalog(TrendingWindow window) {
+        return toComicResponses(findCatalogInOrder(trendingService.getTrending(window)));
+    }
+
+    // This method returns one page of the catalog using keyset pagination.
+    // The cursor is the opaque nextCursor of the previous page, or null for the first page.
+    // Each page is read with an index range scan that starts right after the cursor, so deep pages cost as much as
+    // the first one.
+    // It throws an exception if the cursor cannot be decoded.
+    public ComicPageResponse getCatalogPage(ComicSort sort, Boolean isFinished, String cursor, Integer size)
+            throws AppException {
+        int pageSize = (size == null || size < 1) ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        List<Boolean> finished = (isFinished == null) ? List.of(true, false) : List.of(isFinished);
+
+        // Decode the position of the last comic of the previous page
+        String[] position = decodeCursor(cursor);
+        long afterId;
+        long afterView = Long.MAX_VALUE;
+        Date afterDate = MAX_DATE;
+        try {
+            afterId = (position == null) ? (sort == ComicSort.ID ? 0L : Long.MAX_VALUE) : Long.parseLong(position[1]);
+            if (position != null && sort == ComicSort.VIEW) {
+                afterView = Long.parseLong(position[0]);
+            }
+            if (position != null && sort == ComicSort.LAST_CHAPTER) {
+                afterDate = Timestamp.from(Instant.parse(position[0]));
+            }
+        } catch (RuntimeException e) {
+            throw new AppException(ErrorCode.INVALID_CURSOR);
+        }
+
+        // Fetch one extra row to know whether there is a next page
+        List<ComicCatalogView> comics =
+                switch (sort) {
+                    case ID -> comicRepository.findCatalogPageById(afterId, finished, pageSize + 1);
+                    case VIEW -> comicRepository.findCatalogPageByView(afterView, afterId, finished, pageSize + 1);
+                    case LAST_CHAPTER -> comicRepository.findCatalogPageByLastChapter(
+                            afterDate, afterId, finished, pageSize + 1);
+                };
+
+        boolean hasMore = comics.size() > pageSize;
+        if (hasMore) {
+            comics = comics.subList(0, pageSize);
+        }
+
+        return ComicPageResponse.builder()
+                .comics(toComicResponses(comics))
+                .nextCursor(hasMore ? encodeCursor(sort, comics.get(comics.size() - 1)) : null)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    // This method returns one page of the comics that are not deleted, ranked by the Bayesian average of their
+    // ratings, best first, with their average and number of ratings. Only the comics with the given genre are
+    // listed if genreId is not null. Comics without ratings are not listed.
+    // The page is cut from the in-memory leaderboard and genre bitmaps, so the ratings are not read, and only its
+    // comics are read from the database, in one batch.
+    // It throws an exception if the cursor is invalid.
+    public ComicPageResponse getTopRatedCatalogPage(Long genreId, String cursor, Integer size) throws AppException {
+        int pageSize = (size == null || size < 1) ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+
+        String[] position = decodeCursor(cursor);
+        Double afterScore = null;
+        long afterId = 0L;
+        try {
+            if (position != null) {
+                afterScore = Double.parseDouble(position[0]);
+                afterId = Long.parseLong(position[1]);
+            }
+        } catch (RuntimeException e) {
+            throw new AppException(ErrorCode.INVALID_CURSOR);
+        }
+
+        BitSet comicIds = comicFilterService.filter(FilterGenresRequest.builder()
+                .genreIds((genreId == null) ? null : List.of(genreId))
+                .build());
+
+        // Take one extra comic to know whether there is a next page
+        List<RatingLeaderboard.Entry> entries =
+                comicRankingService.getTopRated(comicIds, afterScore, afterId, pageSize + 1);
+        boolean hasMore = entries.size() > pageSize;
+        if (hasMore) {
+            entries = entries.subList(0, pageSize);
+        }
+
+        Map<Long, RatingLeaderboard.Entry> entriesById = new HashMap<>();
+        for (RatingLeaderboard.Entry entry : entries) {
+            entriesById.put(entry.getComicId(), entry);
+        }
+        List<ComicResponse> comics = toComicResponses(findCatalogInOrder(
+                entries.stream().map(RatingLeaderboard.Entry::getComicId).toList()));
+        for (ComicResponse comic : comics) {
+            RatingLeaderboard.Entry entry = entriesById.get(comic.getId());
+            comic.setAverageRatingScore(entry.getAverageScore());
+            comic.setRatingCount(entry.getRatingCount());
+        }
+
+        // The exact score of the last comic is kept, so the next page starts right after it
+        RatingLeaderboard.Entry last = entries.isEmpty() ? null : entries.get(entries.size() - 1);
+        return ComicPageResponse.builder()
+                .comics(comics)
+                .nextCursor(hasMore ? encodePosition(Double.toString(last.getScore()), last.getComicId()) : null)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    // This method reads the catalog rows of the given comics in one query, in the order of the given IDs.
+    // The comics deleted in the meantime are left out.
+    private List<ComicCatalogView> findCatalogInOrder(List<Long> comicIds) {
+        if (comicIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, Integer> ranks = new HashMap<>();
+        for (int i = 0; i < comicIds.size(); i++) {
+            ranks.put(comicIds.get(i), i);
+        }
+        List<ComicCatalogView> comics = new ArrayList<>(comicRepository.findCatalogByIds(comicIds));
+        comics.sort(Comparator.comparing(comic -> ranks.get(comic.getId())));
+        return comics;
+    }
+
+    private boolean isEmpty(List<Long> ids) {
+        return ids == null || ids.isEmpty();
+    }
+
+    // This method maps catalog rows to ComicResponse objects.
+    // The genres of all the given comics are fetched in a single query.
+    public List<ComicResponse> toComicResponses(List<ComicCatalogView> comics) {
+        if (comics.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Long> comicIds = comics.stream().map(ComicCatalogView::getId).toList();
+
+        return toComicResponses(comics, comicGenreRepository.findGenresOfComics(comicIds));
+    }
+
+    private List<ComicResponse> toComicResponses(List<ComicCatalogView> comics, List<ComicGenreView> comicGenres) {
+        // Group the genres by comic ID
+        Map<Long, List<ComicGenreResponse>> genresByComicId = new HashMap<>();
+        for (ComicGenreView comicGenre : comicGenres) {
+            genresByComicId
+                    .computeIfAbsent(comicGenre.getComicId(), comicId -> new ArrayList<>())
+                    .add(ComicGenreResponse.builder()
+                            .id(comicGenre.getGenreId())
+                            .name(comicGenre.getGenreName())
+                            .build());
+        }
+
+        return comics.stream()
+                .map(comic -> ComicResponse.builder()
+                        .id(comic.getId())
+                        .name(comic.getName())
+                        .author(comic.getAuthor())
+                        .description(comic.getDescription())
+                        .thumbnailUrl(BASE_URL + "/api/comic/thumbnail/" + comic.getId())
+                        .view(viewCountService.withPendingViews(comic.getId(), comic.getView()))
+                        .lastChapter(toLastChapterResponse(comic))
+                        .isFinished(Boolean.TRUE.equals(comic.getIsFinished()))
+                        .genres(genresByComicId.getOrDefault(comic.getId(), new ArrayList<>()))
+                        .build())
+                .toList();
+    }
+
+    private ChapterResponse toLastChapterResponse(ComicCatalogView comic) {
+        if (comic.getLastChapterId() == null) {
+            return null;
+        }
+
+        return ChapterResponse.builder()
+                .id(comic.getLastChapterId())
+                .title(comic.getLastChapterTitle())
+                .chapterNumber(comic.getLastChapterNumber())
+                .createdAt(DateUtil.convertDateToString(comic.getLastChapterCreatedAt()))
+                .build();
+    }
+
+    // This method encodes the sort key and ID of the last comic of a page into an opaque cursor.
+    private String encodeCursor(ComicSort sort, ComicCatalogView lastComic) {
+        String sortKey = "";
+        if (sort == ComicSort.VIEW) {
+            sortKey = String.valueOf(lastComic.getView());
+        } else if (sort == ComicSort.LAST_CHAPTER) {
+            // Keep the sub-millisecond precision of the database timestamp, so the next page never skips rows
+            Date lastChapterAt = lastComic.getLastChapterCreatedAt();
+            sortKey = (lastChapterAt instanceof Timestamp timestamp)
+                    ? timestamp.toInstant().toString()
+                    : lastChapterAt.toInstant().toString();
+        }
+
+        return encodePosition(sortKey, lastComic.getId());
+    }
+
+    // This method encodes a sort key and an ID into an opaque cursor.
+    private String encodePosition(String sortKey, Long id) {
+        String position = sortKey + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // This method decodes a cursor into its sort key and ID.
+    // It returns null if there is no cursor and throws an exception if the cursor is malformed.
+    private String[] decodeCursor(String cursor) throws AppException {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+
+        String position;
+        try {
+            position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new AppException(ErrorCode.INVALID_CURSOR);
+        }
+
+        // The sort key may itself contain colons (e.g. an ISO instant), the ID is always the last part
+        int separator = position.lastIndexOf(':');
+        if (separator < 0) {
+            throw new AppException(ErrorCode.INVALID_CURSOR);
+        }
+
+        return new String[] {position.substring(0, separator), position.substring(separator + 1)};
+    }
+}
@@ -0,0 +1,118 @@
+package com.api.comic_reader.services;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.api.comic_reader.dtos.requests.FilterGenresRequest;
+import com.api.comic_reader.dtos.responses.ComicFacetsResponse;
+import com.api.comic_reader.dtos.responses.GenreFacetResponse;
+import com.api.comic_reader.entities.ComicEntity;
+import com.api.comic_reader.repositories.ComicGenreRepository;
+import com.api.comic_reader.repositories.ComicRepository;
+import com.api.comic_reader.repositories.projections.ComicFilterFlags;
+import com.api.comic_reader.repositories.projections.ComicGenreView;
+import com.api.comic_reader.search.GenreBitmapIndex;
+import com.api.comic_reader.utils.TransactionUtil;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ComicFilterService {
+    // This service keeps the genre bitmaps of the comics, which answer the genre and finished status filters of the
+    // catalog without querying the database.
+    // The bitmaps are built from the database at startup and updated when a comic is inserted, finished or deleted
+    // and when genres are added to a comic.
+    // Each instance keeps its own bitmaps, so a change made through another instance is only seen after a restart.
+
+    @Autowired
+    private ComicRepository comicRepository;
+
+    @Autowired
+    private ComicGenreRepository comicGenreRepository;
+
+    private final GenreBitmapIndex index = new GenreBitmapIndex();
+
+    // This method builds the bitmaps from the comics and their genres.
+    @PostConstruct
+    public void buildIndex() {
+        for (ComicFilterFlags comic : comicRepository.findFilterFlags()) {
+            index.putComic(
+                    comic.getId(),
+                    Boolean.TRUE.equals(comic.getIsFinished()),
+                    Boolean.TRUE.equals(comic.getIsDeleted()));
+        }
+        // The genres of deleted comics are not needed, the deleted bitmap excludes them
+        for (ComicGenreView comicGenre : comicGenreRepository.findGenresOfActiveComics()) {
+            index.addGenre(comicGenre.getComicId(), comicGenre.getGenreId());
+        }
+    }
+
+    // This method returns the IDs of the comics that are not deleted and match the filter of the request, as a
+    // bitmap.
+    public BitSet filter(FilterGenresRequest request) {
+        return index.filter(
+                request.getGenreIds(),
+                request.getAnyGenreIds(),
+                request.getExcludedGenreIds(),
+                request.getIsFinished());
+    }
+
+    // This method returns the number of comics of a filter result per genre and per finished status.
+    // The counts are bitmap cardinalities, so they cost no query and do not depend on the size of the result.
+    public ComicFacetsResponse facets(BitSet result) {
+        GenreBitmapIndex.Facets facets = index.facets(result);
+
+        List<GenreFacetResponse> genres = facets.getGenreCounts().entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(genre -> GenreFacetResponse.builder()
+                        .genreId(genre.getKey())
+                        .count(genre.getValue())
+                        .build())
+                .toList();
+
+        return ComicFacetsResponse.builder()
+                .genres(genres)
+                .finishedCount(facets.getFinishedCount())
+                .notFinishedCount(facets.getNotFinishedCount())
+                .build();
+    }
+
+    // This method returns the number of the given comics per genre and per finished status, such as the results of
+    // a search.
+    // Deleted and unknown comics are not counted.
+    public ComicFacetsResponse facets(Collection<Long> comicIds) {
+        BitSet result = index.filter(null, null, null, null);
+        BitSet selected = new BitSet();
+        for (Long comicId : comicIds) {
+            selected.set(Math.toIntExact(comicId));
+        }
+        result.and(selected);
+        return facets(result);
+    }
+
+    // This method records the current finished and deleted status of a comic.
+    // Inside a transaction, the bitmaps are only updated once the transaction commits.
+    public void indexComic(ComicEntity comic) {
+        long comicId = comic.getId();
+        boolean isFinished = Boolean.TRUE.equals(comic.getIsFinished());
+        boolean isDeleted = Boolean.TRUE.equals(comic.getIsDeleted());
+
+        TransactionUtil.afterCommit(() -> index.putComic(comicId, isFinished, isDeleted));
+    }
+
+    // This method records that a comic has a genre.
+    // Inside a transaction, the bitmaps are only updated once the transaction commits.
+    public void addGenre(Long comicId, Long genreId) {
+        TransactionUtil.afterCommit(() -> index.addGenre(comicId, genreId));
+    }
+}
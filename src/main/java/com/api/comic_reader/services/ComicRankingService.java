@@ -0,0 +1,80 @@
+package com.api.comic_reader.services;
+
+import java.util.BitSet;
+import java.util.List;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.api.comic_reader.entities.ComicRatingStatsEntity;
+import com.api.comic_reader.repositories.ComicRatingStatsRepository;
+import com.api.comic_reader.search.RatingLeaderboard;
+import com.api.comic_reader.utils.TransactionUtil;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ComicRankingService {
+    // This service keeps the leaderboard of the rated comics, ranked by the Bayesian average of their ratings, so
+    // the top rated comics are listed without reading the ratings.
+    // The leaderboard is built from the rating stats at startup, with the mean of all ratings as prior, and updated
+    // when a comic is rated. It is rebuilt after the rating stats are reconciled, which also refreshes the prior.
+    // Each instance keeps its own leaderboard, so a rating made through another instance is only ranked after the
+    // next rebuild.
+
+    // The prior mean when there are no ratings yet, the middle of the 1 to 5 scale
+    private static final double DEFAULT_PRIOR_MEAN = 3.0;
+
+    @Autowired
+    private ComicRatingStatsRepository comicRatingStatsRepository;
+
+    @Value("${app.top-rated.prior-votes}")
+    private double PRIOR_VOTES;
+
+    private volatile RatingLeaderboard leaderboard;
+
+    // This method builds the leaderboard from the rating stats of the rated comics.
+    // The ratings made while it is built may be missing from it until the next rebuild.
+    @PostConstruct
+    public void buildLeaderboard() {
+        List<ComicRatingStatsEntity> ratedComics = comicRatingStatsRepository.findByRatingCountGreaterThan(0L);
+
+        long ratingCount = 0L;
+        long ratingSum = 0L;
+        for (ComicRatingStatsEntity stats : ratedComics) {
+            ratingCount += stats.getRatingCount();
+            ratingSum += stats.getRatingSum();
+        }
+        double priorMean = (ratingCount == 0) ? DEFAULT_PRIOR_MEAN : (double) ratingSum / ratingCount;
+
+        RatingLeaderboard built = new RatingLeaderboard(priorMean, PRIOR_VOTES);
+        for (ComicRatingStatsEntity stats : ratedComics) {
+            built.put(stats.getComicId(), stats.getRatingCount(), stats.getRatingSum());
+        }
+        leaderboard = built;
+        log.info("Ranked {} rated comics with a prior mean of {}", ratedComics.size(), priorMean);
+    }
+
+    // This method moves a comic in the leaderboard after it is rated. previousScore is the score the user had given
+    // before, null for a new rating.
+    // Inside a transaction, the leaderboard is only updated once the transaction commits.
+    // The rating is applied to the leaderboard that is current when it is made, before its transaction commits.
+    // A leaderboard swapped in later may have read stats that already count the rating, so it never receives it and
+    // the rating is not counted twice.
+    public void recordRating(Long comicId, Long previousScore, Long score) {
+        RatingLeaderboard current = leaderboard;
+        TransactionUtil.afterCommit(() -> current.rate(comicId, previousScore, score));
+    }
+
+    // This method returns the best ranked comics of the given set after the given position, best first.
+    // The position is the score and ID of the last comic of the previous page, or null for the first page.
+    public List<RatingLeaderboard.Entry> getTopRated(BitSet comicIds, Double afterScore, long afterId, int limit) {
+        return leaderboard.page(comicIds, afterScore, afterId, limit);
+    }
+}
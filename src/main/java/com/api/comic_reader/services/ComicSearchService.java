@@ -0,0 +1,155 @@
+package com.api.comic_reader.services;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.api.comic_reader.dtos.responses.ComicSuggestionResponse;
+import com.api.comic_reader.entities.ComicEntity;
+import com.api.comic_reader.repositories.ComicRepository;
+import com.api.comic_reader.repositories.projections.ComicSearchDocument;
+import com.api.comic_reader.repositories.projections.ComicViewCount;
+import com.api.comic_reader.search.SuggestionTrie;
+import com.api.comic_reader.search.TrigramIndex;
+import com.api.comic_reader.utils.TextNormalizationUtil;
+import com.api.comic_reader.utils.TransactionUtil;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ComicSearchService {
+    // This service keeps a trigram index of the name, author and description of the comics that are not deleted.
+    // The name and author are also indexed by token, so their words match by prefix and with typos.
+    // Every text is normalized with TextNormalizationUtil, so "tham tu" finds "Thám Tử".
+    // It also keeps a suggestion trie of the normalized name and author of the comics, and of each of their words,
+    // ranked by view count, for type-ahead.
+    // Both are built from the database at startup and updated when a comic is inserted, edited or deleted, so a
+    // search or a suggestion never queries the database. The view counts of the trie are refreshed periodically.
+    // Each instance keeps its own index, so a comic edited through another instance is only found with its new text
+    // after a restart.
+
+    private static final double NAME_WEIGHT = 3.0;
+    private static final double AUTHOR_WEIGHT = 2.0;
+    private static final double DESCRIPTION_WEIGHT = 1.0;
+
+    @Autowired
+    private ComicRepository comicRepository;
+
+    @Autowired
+    private ViewCountService viewCountService;
+
+    @Value("${app.search.min-similarity}")
+    private double MIN_SIMILARITY;
+
+    @Value("${app.search.max-results}")
+    private int MAX_RESULTS;
+
+    @Value("${app.suggest.max-results}")
+    private int MAX_SUGGESTIONS;
+
+    // The name and author are the tokenized fields
+    private final TrigramIndex index = new TrigramIndex(2, NAME_WEIGHT, AUTHOR_WEIGHT, DESCRIPTION_WEIGHT);
+
+    private SuggestionTrie suggestionTrie;
+
+    // This method builds the index and the suggestion trie from the comics that are not deleted.
+    // The stored normalized name and author are used when they have been computed.
+    @PostConstruct
+    public void buildIndex() {
+        suggestionTrie = new SuggestionTrie(MAX_SUGGESTIONS);
+
+        List<ComicSearchDocument> comics = comicRepository.findSearchDocuments();
+        for (ComicSearchDocument comic : comics) {
+            String name = (comic.getNormalizedName() != null) ? comic.getNormalizedName() : comic.getName();
+            String author = (comic.getNormalizedAuthor() != null) ? comic.getNormalizedAuthor() : comic.getAuthor();
+            index.put(comic.getId(), name, author, comic.getDescription());
+            suggestionTrie.put(
+                    comic.getId(),
+                    comic.getName(),
+                    viewCountService.withPendingViews(comic.getId(), comic.getView()),
+                    suggestionTerms(name, author));
+        }
+        log.info("Indexed {} comics for search", index.size());
+    }
+
+    // This method returns the most viewed comics whose name or author, or one of their words, starts with the
+    // query, ignoring case and diacritics.
+    // At most app.suggest.max-results comics are returned.
+    public List<ComicSuggestionResponse> suggest(String query) {
+        return suggestionTrie.suggest(TextNormalizationUtil.normalize(query)).stream()
+                .map(suggestion -> ComicSuggestionResponse.builder()
+                        .id(suggestion.getKey())
+                        .name(suggestion.getLabel())
+                        .build())
+                .toList();
+    }
+
+    // This method updates the view counts that rank the suggestions.
+    // Only the comics whose view count changed are moved in the trie.
+    @Scheduled(
+            fixedDelayString = "${app.suggest.refresh-interval-ms}",
+            initialDelayString = "${app.suggest.refresh-interval-ms}")
+    public void refreshSuggestionRanks() {
+        for (ComicViewCount viewCount : comicRepository.findViewCounts()) {
+            SuggestionTrie.Suggestion suggestion = suggestionTrie.get(viewCount.getId());
+            long views = viewCountService.withPendingViews(viewCount.getId(), viewCount.getView());
+            if (suggestion != null && suggestion.getRank() != views) {
+                suggestionTrie.put(suggestion.getKey(), suggestion.getLabel(), views, suggestion.getTerms());
+            }
+        }
+    }
+
+    // This method returns the IDs of the comics that match the keyword, best match first.
+    // At most app.search.max-results IDs are returned.
+    public List<Long> search(String keyword) {
+        return index.search(keyword, MIN_SIMILARITY, MAX_RESULTS).stream()
+                .map(TrigramIndex.Match::getKey)
+                .toList();
+    }
+
+    // This method indexes the current text of a comic, or removes it from the index and the trie if it is deleted.
+    // Inside a transaction, they are only updated once the transaction commits, so a rollback leaves them as is.
+    public void indexComic(ComicEntity comic) {
+        long comicId = comic.getId();
+        String name = comic.getName();
+        String author = comic.getAuthor();
+        String description = comic.getDescription();
+        long views = viewCountService.withPendingViews(comicId, comic.getView());
+        boolean isDeleted = Boolean.TRUE.equals(comic.getIsDeleted());
+
+        TransactionUtil.afterCommit(() -> {
+            if (isDeleted) {
+                index.remove(comicId);
+                suggestionTrie.remove(comicId);
+            } else {
+                index.put(comicId, name, author, description);
+                suggestionTrie.put(comicId, name, views, suggestionTerms(name, author));
+            }
+        });
+    }
+
+    // This method returns the terms a comic is suggested for: its normalized name and author, and what follows each
+    // of their spaces, so a comic is also suggested for the start of any of their words.
+    private Set<String> suggestionTerms(String name, String author) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String text : Arrays.asList(name, author)) {
+            String normalizedText = TextNormalizationUtil.normalize(text);
+            terms.add(normalizedText);
+            for (int i = normalizedText.indexOf(' '); i >= 0; i = normalizedText.indexOf(' ', i + 1)) {
+                terms.add(normalizedText.substring(i + 1));
+            }
+        }
+        return terms;
+    }
+}
@@ -1,9 +1,11 @@
 package com.api.comic_reader.services;
 
-import java.util.Collections;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 import jakarta.transaction.Transactional;
 
@@ -14,21 +16,30 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
 
 import com.api.comic_reader.dtos.requests.ComicRequest;
-import com.api.comic_reader.dtos.responses.ChapterResponse;
 import com.api.comic_reader.dtos.responses.ComicGenreResponse;
 import com.api.comic_reader.dtos.responses.ComicInformationResponse;
+import com.api.comic_reader.dtos.responses.ComicPageResponse;
+import com.api.comic_reader.dtos.responses.ComicRatingResponse;
 import com.api.comic_reader.dtos.responses.ComicResponse;
+import com.api.comic_reader.dtos.responses.ComicSuggestionResponse;
 import com.api.comic_reader.entities.ComicEntity;
 import com.api.comic_reader.entities.RatingEntity;
 import com.api.comic_reader.entities.UserEntity;
+import com.api.comic_reader.enums.ComicSort;
+import com.api.comic_reader.enums.TrendingWindow;
 import com.api.comic_reader.exception.AppException;
 import com.api.comic_reader.exception.ErrorCode;
 import com.api.comic_reader.repositories.BookmarkRepository;
 import com.api.comic_reader.repositories.ComicRepository;
+import com.api.comic_reader.repositories.ComicThumbnailRepository;
 import com.api.comic_reader.repositories.RatingRepository;
 import com.api.comic_reader.repositories.UserRepository;
+import com.api.comic_reader.repositories.projections.ImageMetadata;
+import com.api.comic_reader.storage.StoredImage;
+import com.api.comic_reader.utils.TextNormalizationUtil;
 
 import lombok.RequiredArgsConstructor;
 
@@ -40,7 +51,22 @@ public class ComicService {
     private ComicRepository comicRepository;
 
     @Autowired
-    private ChapterService chapterService;
+    private ComicThumbnailRepository comicThumbnailRepository;
+
+    @Autowired
+    private ImageStorageService imageStorageService;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private ComicCatalogService comicCatalogService;
+
+    @Autowired
+    private ComicSearchService comicSearchService;
+
+    @Autowired
+    private ComicFilterService comicFilterService;
 
     @Autowired
     private GenreService genreService;
@@ -57,45 +83,82 @@ public class ComicService {
     @Autowired
     private BookmarkRepository bookmarkRepository;
 
+    @Autowired
+    private ViewCountService viewCountService;
+
     @Value("${app.base-url}")
     private String BASE_URL;
 
+    @Value("${app.catalog.latest-comics-count}")
+    private int LATEST_COMICS_COUNT;
+
+    @Value("${app.catalog.most-viewed-comics-count}")
+    private int MOST_VIEWED_COMICS_COUNT;
+
     // This method returns all comics in the database.
     // It filters out the deleted comics.
-    // It maps each comic to a ComicResponse object.
+    // It reads the comics through the catalog projection, so the number of queries does not grow with the catalog.
     public List<ComicResponse> getAllComics() {
-        List<ComicEntity> comics = comicRepository.findAll();
+        return comicCatalogService.getCatalog();
+    }
 
-        if (comics.isEmpty()) {
-            return Collections.emptyList();
+    // This method returns all comics with the given finished status.
+    // It filters out the deleted comics.
+    // The finished status is filtered by the database.
+    public List<ComicResponse> getComicsByFinished(boolean isFinished) {
+        return comicCatalogService.getCatalogByFinished(isFinished);
+    }
+
+    // This method returns the comics whose last chapter was created most recently.
+    // The number of comics is configured by app.catalog.latest-comics-count.
+    public List<ComicResponse> getLatestComics() {
+        return comicCatalogService.getLatestUpdatedCatalog(LATEST_COMICS_COUNT);
+    }
+
+    // This method returns the most viewed comics that have at least one chapter.
+    // The number of comics is configured by app.catalog.most-viewed-comics-count.
+    public List<ComicResponse> getMostViewedComics() {
+        return comicCatalogService.getMostViewedCatalog(MOST_VIEWED_COMICS_COUNT);
+    }
+
+    // This method returns the comics whose chapters are the most read lately, over the given window, "24h" (the
+    // default) or "7d". Recent reads count more than older ones.
+    // It throws an exception if the window is invalid.
+    public List<ComicResponse> getTrendingComics(String window) throws AppException {
+        TrendingWindow trendingWindow = (window == null) ? TrendingWindow.DAY : TrendingWindow.fromValue(window);
+        if (trendingWindow == null) {
+            throw new AppException(ErrorCode.INVALID_TRENDING_WINDOW);
+        }
+
+        return comicCatalogService.getTrendingCatalog(trendingWindow);
+    }
+
+    // This method returns one page of comics, sorted by the given sort, using keyset pagination.
+    // If isFinished is not null, only comics with that finished status are returned.
+    // It throws an exception if the sort or the cursor is invalid.
+    public ComicPageResponse getComicsPage(String sort, Boolean isFinished, String cursor, Integer size)
+            throws AppException {
+        ComicSort comicSort = (sort == null) ? ComicSort.ID : ComicSort.fromValue(sort);
+        if (comicSort == null) {
+            throw new AppException(ErrorCode.INVALID_SORT);
         }
 
-        return comics.stream()
-                .filter(comic -> !comic.getIsDeleted())
-                .map(comic -> {
-                    String thumbnailUrl = BASE_URL + "/api/comic/thumbnail/" + comic.getId();
-                    ChapterResponse lastChapter = chapterService.getLastChapter(comic.getId());
-
-                    List<ComicGenreResponse> genreResponses = genreService.getComicGenres(comic.getId());
-
-                    return ComicResponse.builder()
-                            .id(comic.getId())
-                            .name(comic.getName())
-                            .author(comic.getAuthor())
-                            .description(comic.getDescription())
-                            .thumbnailUrl(thumbnailUrl)
-                            .view(comic.getView())
-                            .lastChapter(lastChapter)
-                            .isFinished(comic.getIsFinished())
-                            .genres(genreResponses)
-                            .build();
-                })
-                .collect(Collectors.toList());
+        return comicCatalogService.getCatalogPage(comicSort, isFinished, cursor, size);
+    }
+
+    // This method returns one page of the comics ranked by the Bayesian average of their ratings, best first,
+    // optionally only the comics with the given genre.
+    // It throws an exception if the cursor is invalid.
+    public ComicPageResponse getTopRatedComicsPage(Long genreId, String cursor, Integer size) throws AppException {
+        return comicCatalogService.getTopRatedCatalogPage(genreId, cursor, size);
     }
 
     // This method inserts a new comic into the database.
     // It requires the user to have ADMIN authority.
     // It throws an exception if the thumbnail is invalid or if the comic name is already taken.
+    // The thumbnail is saved in its own table.
+    // The comic is added to the search index and the genre bitmaps once the transaction commits.
+    @Transactional
     @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
     public void insertComic(ComicRequest newComic) throws AppException {
 
@@ -117,65 +180,107 @@ public class ComicService {
         try {
             ComicEntity comic = ComicEntity.builder()
                     .name(newComic.getName())
+                    .normalizedName(TextNormalizationUtil.normalize(newComic.getName()))
                     .author(newComic.getAuthor())
+                    .normalizedAuthor(TextNormalizationUtil.normalize(newComic.getAuthor()))
                     .view(0L)
                     .description(newComic.getDescription())
                     .isFinished(false)
                     .isDeleted(false)
-                    .thumbnailImage(newComic.getThumbnailImage().getBytes())
                     .build();
 
             comicRepository.save(comic);
+            saveThumbnail(comic.getId(), newComic.getThumbnailImage());
+            comicSearchService.indexComic(comic);
+            comicFilterService.indexComic(comic);
 
+        } catch (AppException e) {
+            throw e;
         } catch (Exception e) {
             throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION);
         }
     }
 
-    // This method returns the thumbnail image of a comic with the given ID.
-    // It throws an exception if the comic is not found or if it is deleted.
-    public byte[] getThumbnailImage(Long comicId) {
-        Optional<ComicEntity> comicOptional = comicRepository.findById(comicId);
-        if (comicOptional.isEmpty() || comicOptional.get().getIsDeleted()) {
-            throw new AppException(ErrorCode.COMIC_NOT_FOUND);
+    // This method returns the hash, content type and size of the thumbnail of a comic with the given ID.
+    // If a width is requested, it returns the smallest variant of the thumbnail that is at least that wide, if any.
+    // It does not read the thumbnail image data.
+    // It throws an exception if the comic is not found, if it is deleted or if it has no thumbnail.
+    public ImageMetadata getThumbnailMetadata(Long comicId, Integer requestedWidth) throws AppException {
+        ImageMetadata metadata = comicThumbnailRepository
+                .findMetadataByComicId(comicId)
+                .orElseThrow(() -> new AppException(ErrorCode.COMIC_NOT_FOUND));
+        return imageVariantService.selectVariant(metadata, requestedWidth).getMetadata();
+    }
+
+    // This method returns the local file of a thumbnail, so it can be sent without copying it through the JVM.
+    // It returns null if the thumbnail is not stored on the local filesystem.
+    public Path getThumbnailFile(ImageMetadata metadata) {
+        return imageStorageService.getLocalFile(metadata);
+    }
+
+    // This method writes a range of the thumbnail image data of a comic to the given output stream.
+    // It is the only method that reads thumbnail image data.
+    public void writeThumbnailData(
+            Long comicId, ImageMetadata metadata, long offset, long length, OutputStream outputStream)
+            throws IOException {
+        imageStorageService.writeThumbnail(comicId, metadata, offset, length, outputStream);
+    }
+
+    // This method saves the thumbnail data of a comic to the blob store, and its metadata to the database.
+    // The thumbnail is streamed from the upload to the blob store, it is never held in memory.
+    // The replaced thumbnail is removed from the image cache.
+    private void saveThumbnail(Long comicId, MultipartFile thumbnailImage) throws IOException {
+        Optional<String> previousContentHash = comicThumbnailRepository.findContentHashByComicId(comicId);
+        StoredImage storedImage;
+        try (InputStream input = thumbnailImage.getInputStream()) {
+            storedImage = imageStorageService.store(input);
         }
-        ComicEntity comic = comicOptional.get();
-        return comic.getThumbnailImage();
+        comicThumbnailRepository.upsertThumbnail(
+                comicId,
+                storedImage.getContentHash(),
+                storedImage.getContentType(),
+                storedImage.getByteSize(),
+                storedImage.getWidth(),
+                storedImage.getHeight());
+        previousContentHash
+                .filter(contentHash -> !contentHash.equals(storedImage.getContentHash()))
+                .ifPresent(imageStorageService::evictFromCache);
     }
 
-    // This method returns all comics that contain the given keyword in their name.
+    // This method returns the comics whose name, author or description match the given keyword, best match first.
     // It filters out the deleted comics.
-    // It maps each comic to a ComicResponse object.
     // It throws an exception if the keyword is invalid or if no comics are found.
     public List<ComicResponse> searchComics(String keyword) throws AppException {
         if (keyword == null || keyword.length() < 4L) {
             throw new AppException(ErrorCode.INVALID_KEYWORD);
         }
-        List<ComicEntity> comics = comicRepository.findByNameContainingIgnoreCase(keyword);
+        List<ComicResponse> comics = comicCatalogService.searchCatalog(keyword);
 
         if (comics.isEmpty()) {
             throw new AppException(ErrorCode.COMIC_NOT_FOUND);
         }
 
-        return comics.stream()
-                .filter(comic -> !comic.getIsDeleted())
-                .map(comic -> {
-                    String thumbnailUrl = BASE_URL + "/api/comic/thumbnail/" + comic.getId();
-                    ChapterResponse lastChapter = chapterService.getLastChapter(comic.getId());
-
-                    return ComicResponse.builder()
-                            .id(comic.getId())
-                            .name(comic.getName())
-                            .author(comic.getAuthor())
-                            .description(comic.getDescription())
-                            .thumbnailUrl(thumbnailUrl)
-                            .view(comic.getView())
-                            .lastChapter(lastChapter)
-                            .genres(genreService.getComicGenres(comic.getId()))
-                            .isFinished(comic.getIsFinished())
-                            .build();
-                })
-                .collect(Collectors.toList());
+        return comics;
+    }
+
+    // This method returns the comics that match the given keyword like searchComics, as a single page together with
+    // the number of these comics per genre and per finished status.
+    // It throws an exception if the keyword is invalid or if no comics are found.
+    public ComicPageResponse searchComicsWithFacets(String keyword) throws AppException {
+        List<ComicResponse> comics = searchComics(keyword);
+
+        return ComicPageResponse.builder()
+                .comics(comics)
+                .hasMore(false)
+                .facets(comicFilterService.facets(
+                        comics.stream().map(ComicResponse::getId).toList()))
+                .build();
+    }
+
+    // This method returns the most viewed comics whose name or author, or one of their words, starts with the query.
+    // It is answered from the in-memory suggestion trie, so it never queries the database.
+    public List<ComicSuggestionResponse> suggestComics(String query) {
+        return comicSearchService.suggest(query);
     }
 
     // This method returns the information of a comic with the given ID.
@@ -208,16 +313,20 @@ public class ComicService {
             }
         }
 
+        ComicRatingResponse rating = ratingService.getComicRating(comicId);
+
         return ComicInformationResponse.builder()
                 .id(comic.getId())
                 .name(comic.getName())
                 .author(comic.getAuthor())
                 .description(comic.getDescription())
                 .thumbnailUrl(BASE_URL + "/api/comic/thumbnail/" + comic.getId())
-                .view(comic.getView())
+                .view(viewCountService.withPendingViews(comic.getId(), comic.getView()))
                 .isFinished(comic.getIsFinished())
                 .userRatingScore(userRatingScore)
-                .averageRatingScore(ratingService.getComicAverageRating(comicId))
+                .averageRatingScore(rating.getAverageScore())
+                .ratingCount(rating.getRatingCount())
+                .ratingStarCounts(rating.getStarCounts())
                 .genres(genres)
                 .build();
     }
@@ -225,6 +334,9 @@ public class ComicService {
     // This method edits a comic with the given ID.
     // It requires the user to have ADMIN authority.
     // It throws an exception if the comic is not found, if it is deleted, or if the thumbnail is invalid.
+    // A new thumbnail replaces the old one without loading it.
+    // The search index is updated once the transaction commits.
+    @Transactional
     @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
     public void editComic(Long comicId, ComicRequest editComicRequest) throws AppException {
         Optional<ComicEntity> comicOptional = comicRepository.findById(comicId);
@@ -236,9 +348,11 @@ public class ComicService {
 
         if (editComicRequest.getName() != null) {
             comic.setName(editComicRequest.getName());
+            comic.setNormalizedName(TextNormalizationUtil.normalize(editComicRequest.getName()));
         }
         if (editComicRequest.getAuthor() != null) {
             comic.setAuthor(editComicRequest.getAuthor());
+            comic.setNormalizedAuthor(TextNormalizationUtil.normalize(editComicRequest.getAuthor()));
         }
         if (editComicRequest.getDescription() != null) {
             comic.setDescription(editComicRequest.getDescription());
@@ -254,18 +368,22 @@ public class ComicService {
                 if (fileName.contains("..")) {
                     throw new AppException(ErrorCode.INVALID_THUMBNAIL);
                 }
-                comic.setThumbnailImage(editComicRequest.getThumbnailImage().getBytes());
+                saveThumbnail(comicId, editComicRequest.getThumbnailImage());
+            } catch (AppException e) {
+                throw e;
             } catch (Exception e) {
                 throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION);
             }
         }
 
         comicRepository.save(comic);
+        comicSearchService.indexComic(comic);
     }
 
     // This method deletes a comic with the given ID.
     // It requires the user to have ADMIN authority.
     // It throws an exception if the comic is not found or if it is deleted.
+    // The comic is removed from the search index and the genre bitmaps once the transaction commits.
     @Transactional
     @PreAuthorize("hasAuthority('SCOPE_ADMIN')")
     public void deleteComic(Long comicId) throws AppException {
@@ -277,8 +395,13 @@ public class ComicService {
         ComicEntity comic = comicOptional.get();
         comic.setIsDeleted(true);
 
+        // The thumbnail of a deleted comic is no longer served
+        comicThumbnailRepository.findContentHashByComicId(comicId).ifPresent(imageStorageService::evictFromCache);
+
         bookmarkRepository.deleteByComic(comic);
         comicRepository.save(comic);
+        comicSearchService.indexComic(comic);
+        comicFilterService.indexComic(comic);
     }
 
     // This method sets the finished status of a comic with the given ID.
@@ -297,10 +420,12 @@ public class ComicService {
         if (comic.getIsFinished()) {
             comic.setIsFinished(false);
             comicRepository.save(comic);
+            comicFilterService.indexComic(comic);
             return false;
         } else {
             comic.setIsFinished(true);
             comicRepository.save(comic);
+            comicFilterService.indexComic(comic);
             return true;
         }
     }
@@ -5,7 +5,6 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.stereotype.Service;
@@ -13,8 +12,8 @@ import org.springframework.stereotype.Service;
 import com.api.comic_reader.dtos.requests.AddGenresToComicRequest;
 import com.api.comic_reader.dtos.requests.AddNewGenreRequest;
 import com.api.comic_reader.dtos.requests.FilterGenresRequest;
-import com.api.comic_reader.dtos.responses.ChapterResponse;
 import com.api.comic_reader.dtos.responses.ComicGenreResponse;
+import com.api.comic_reader.dtos.responses.ComicPageResponse;
 import com.api.comic_reader.dtos.responses.ComicResponse;
 import com.api.comic_reader.dtos.responses.GenreResponse;
 import com.api.comic_reader.entities.ComicEntity;
@@ -40,13 +39,13 @@ public class GenreService {
     private GenreRepository genreRepository;
 
     @Autowired
-    private ChapterService chapterService;
+    private ComicCatalogService comicCatalogService;
 
     @Autowired
     private ComicGenreRepository comicGenreRepository;
 
-    @Value("${app.base-url}")
-    private String BASE_URL;
+    @Autowired
+    private ComicFilterService comicFilterService;
 
     // This method returns all genres in the database.
     public List<GenreResponse> getAllGenres() {
@@ -86,29 +85,19 @@ public class GenreService {
     }
 
     // This method returns all comics that have all of the genres specified in the request.
+    // The request may also give genres of which the comics must have at least one, genres they must not have, and
+    // their finished status.
+    // It filters out the deleted comics.
     public List<ComicResponse> getComicsByGenres(FilterGenresRequest genresRequest) {
-        List<Long> genreIds = genresRequest.getGenreIds();
-        List<ComicEntity> comics = comicRepository.findByGenresIdIn(genreIds, genreIds.size());
-
-        return comics.stream()
-                .filter(comic -> !comic.getIsDeleted())
-                .map(comic -> {
-                    String thumbnailUrl = BASE_URL + "/api/comic/thumbnail/" + comic.getId();
-                    ChapterResponse lastChapter = chapterService.getLastChapter(comic.getId());
-
-                    return ComicResponse.builder()
-                            .id(comic.getId())
-                            .name(comic.getName())
-                            .author(comic.getAuthor())
-                            .description(comic.getDescription())
-                            .thumbnailUrl(thumbnailUrl)
-                            .view(comic.getView())
-                            .lastChapter(lastChapter)
-                            .genres(this.getComicGenres(comic.getId()))
-                            .isFinished(comic.getIsFinished())
-                            .build();
-                })
-                .collect(Collectors.toList());
+        return comicCatalogService.getCatalogByGenres(genresRequest);
+    }
+
+    // This method returns one page of the comics that match the genre and finished status filter of the request,
+    // ordered by ID. The nextCursor of a page is passed as the cursor of the request to get the following page.
+    // It filters out the deleted comics.
+    // It throws an exception if the cursor is invalid.
+    public ComicPageResponse filterComics(FilterGenresRequest filterRequest) throws AppException {
+        return comicCatalogService.getCatalogPageByFilter(filterRequest);
     }
 
     // This method adds a new genre to the database.
@@ -159,6 +148,7 @@ public class GenreService {
                     .comic(comic)
                     .genre(genre)
                     .build());
+            comicFilterService.addGenre(comic.getId(), genre.getId());
         }
     }
 }
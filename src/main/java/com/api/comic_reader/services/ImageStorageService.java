@@ -0,0 +1,226 @@
+package com.api.comic_reader.services;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.api.comic_reader.dtos.responses.ImageCacheStatsResponse;
+import com.api.comic_reader.exception.AppException;
+import com.api.comic_reader.exception.ErrorCode;
+import com.api.comic_reader.repositories.ChapterImageRepository;
+import com.api.comic_reader.repositories.ImageDataRepository;
+import com.api.comic_reader.repositories.projections.ImageMetadata;
+import com.api.comic_reader.storage.BlobStore;
+import com.api.comic_reader.storage.OffHeapImageCache;
+import com.api.comic_reader.storage.SpooledUpload;
+import com.api.comic_reader.storage.StoredImage;
+import com.api.comic_reader.utils.ImageUtil;
+
+import lombok.RequiredArgsConstructor;
+
+@Service
+@RequiredArgsConstructor
+public class ImageStorageService {
+    // This service hides where the data of an image is stored.
+    // New images are stored in the blob store, while images uploaded before it existed stay in their BYTEA column
+    // until BlobMigrationService moves them.
+    // Images that are not sent with sendfile are served from an off-heap cache, keyed by content hash.
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private ImageDataRepository imageDataRepository;
+
+    @Autowired
+    private ChapterImageRepository chapterImageRepository;
+
+    @Autowired
+    private OffHeapImageCache imageCache;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Value("${app.storage.upload.max-image-bytes}")
+    private long MAX_IMAGE_BYTES;
+
+    // This method stores the data of a new image in the blob store, and generates its smaller variants and its
+    // placeholder in the background.
+    // It returns the metadata to save in the database.
+    public StoredImage store(byte[] data) throws IOException {
+        StoredImage storedImage = describe(data);
+        blobStore.put(storedImage.getContentHash(), data);
+        imageVariantService.processImageAsync(storedImage.getContentHash());
+        return storedImage;
+    }
+
+    // This method stores an uploaded image in the blob store, and generates its smaller variants and its placeholder
+    // in the background.
+    // The upload is copied to a temporary file while its hash is computed, then validated and copied from that file
+    // to the blob store, so its size does not matter to the heap.
+    // It throws an exception if the upload is larger than app.storage.upload.max-image-bytes or is not an image.
+    // It returns the metadata to save in the database.
+    public StoredImage store(InputStream input) throws IOException {
+        try (SpooledUpload upload = SpooledUpload.spool(input, MAX_IMAGE_BYTES)) {
+            return store(upload);
+        }
+    }
+
+    // This method validates an image already copied to a temporary file and copies it to the blob store, then
+    // generates its smaller variants and its placeholder in the background.
+    // The caller keeps the upload and must close it.
+    // It throws an exception if the upload was truncated or is not an image.
+    // It returns the metadata to save in the database.
+    public StoredImage store(SpooledUpload upload) throws IOException {
+        if (upload.isTruncated()) {
+            throw new AppException(ErrorCode.IMAGE_TOO_LARGE);
+        }
+
+        String contentType = ImageUtil.detectContentType(upload.getHeader());
+        if (!ImageUtil.isImage(contentType)) {
+            throw new AppException(ErrorCode.INVALID_IMAGE);
+        }
+
+        Dimension dimensions = ImageUtil.readDimensions(upload.getFile());
+        blobStore.putFile(upload.getContentHash(), upload.getFile());
+        imageVariantService.processImageAsync(upload.getContentHash());
+
+        return StoredImage.builder()
+                .contentHash(upload.getContentHash())
+                .contentType(contentType)
+                .byteSize(upload.getByteSize())
+                .width(dimensions == null ? null : dimensions.width)
+                .height(dimensions == null ? null : dimensions.height)
+                .crc32(upload.getCrc32())
+                .build();
+    }
+
+    // This method computes the hash, content type, size and dimensions of an image.
+    public StoredImage describe(byte[] data) {
+        Dimension dimensions = ImageUtil.readDimensions(data);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        return StoredImage.builder()
+                .contentHash(ImageUtil.sha256Hex(data))
+                .contentType(ImageUtil.detectContentType(data))
+                .byteSize(data.length)
+                .width(dimensions == null ? null : dimensions.width)
+                .height(dimensions == null ? null : dimensions.height)
+                .crc32(crc.getValue())
+                .build();
+    }
+
+    // This method returns the local file of an image, so it can be sent with sendfile.
+    // It returns null if the image is still stored in the database or if the blob store is not local.
+    public Path getLocalFile(ImageMetadata metadata) {
+        if (Boolean.TRUE.equals(metadata.getIsStoredInDatabase())) {
+            return null;
+        }
+        return blobStore.getLocalFile(metadata.getContentHash()).orElse(null);
+    }
+
+    // This method writes a range of the data of a chapter image to the given output stream.
+    public void writeChapterImage(Long imageId, ImageMetadata metadata, long offset, long length, OutputStream output)
+            throws IOException {
+        OffHeapImageCache.ImageSource databaseSource = imageOutput ->
+                imageDataRepository.writeChapterImageData(imageId, 0, metadata.getByteSize(), imageOutput);
+        if (writeCached(metadata, offset, length, output, databaseSource)) {
+            return;
+        }
+
+        // The image may have been moved to the blob store since its metadata was read
+        if (!Boolean.TRUE.equals(metadata.getIsStoredInDatabase())
+                || !imageDataRepository.writeChapterImageData(imageId, offset, length, output)) {
+            blobStore.write(metadata.getContentHash(), offset, length, output);
+        }
+    }
+
+    // This method computes the CRC-32 of an image stored in the blob store.
+    // The image is read from the blob store as a stream, without going through the off-heap cache.
+    public long computeCrc32(ImageMetadata metadata) throws IOException {
+        CRC32 crc = new CRC32();
+        try (OutputStream output = new CheckedOutputStream(OutputStream.nullOutputStream(), crc)) {
+            blobStore.write(metadata.getContentHash(), 0, metadata.getByteSize(), output);
+        }
+        return crc.getValue();
+    }
+
+    // This method writes a range of the thumbnail data of a comic to the given output stream.
+    public void writeThumbnail(Long comicId, ImageMetadata metadata, long offset, long length, OutputStream output)
+            throws IOException {
+        OffHeapImageCache.ImageSource databaseSource =
+                imageOutput -> imageDataRepository.writeThumbnailData(comicId, 0, metadata.getByteSize(), imageOutput);
+        if (writeCached(metadata, offset, length, output, databaseSource)) {
+            return;
+        }
+
+        // The thumbnail may have been moved to the blob store since its metadata was read
+        if (!Boolean.TRUE.equals(metadata.getIsStoredInDatabase())
+                || !imageDataRepository.writeThumbnailData(comicId, offset, length, output)) {
+            blobStore.write(metadata.getContentHash(), offset, length, output);
+        }
+    }
+
+    // This method deletes all images of a chapter in a single statement and removes them from the off-heap cache.
+    public void deleteChapterImages(Long chapterId) {
+        List<String> contentHashes = chapterImageRepository.findContentHashesByChapterId(chapterId);
+        chapterImageRepository.deleteByChapterId(chapterId);
+        contentHashes.forEach(imageCache::invalidate);
+    }
+
+    // This method removes an image from the off-heap cache.
+    // It must be called when an admin replaces or deletes an image, so the cache does not keep its data.
+    public void evictFromCache(String contentHash) {
+        imageCache.invalidate(contentHash);
+    }
+
+    // This method returns the statistics of the off-heap image cache.
+    public ImageCacheStatsResponse getCacheStats() {
+        return imageCache.getStats();
+    }
+
+    // This method writes a range of an image from the off-heap cache.
+    // On a miss, it streams the whole image into the cache and writes the range from there, if the image is small
+    // enough to be cached. The image is copied from its storage to the off-heap pages, never to the heap as a whole.
+    // It returns false if the image was not written, so the caller must read it from its storage.
+    private boolean writeCached(
+            ImageMetadata metadata,
+            long offset,
+            long length,
+            OutputStream output,
+            OffHeapImageCache.ImageSource databaseSource)
+            throws IOException {
+        String contentHash = metadata.getContentHash();
+        long byteSize = metadata.getByteSize();
+        if (imageCache.write(contentHash, offset, length, output)) {
+            return true;
+        }
+        if (!imageCache.accepts(byteSize)) {
+            return false;
+        }
+
+        // The image may have been moved to the blob store since its metadata was read, then the database has nothing
+        if (Boolean.TRUE.equals(metadata.getIsStoredInDatabase())
+                && imageCache.putAndWrite(contentHash, byteSize, databaseSource, offset, length, output)) {
+            return true;
+        }
+        return blobStore.exists(contentHash)
+                && imageCache.putAndWrite(
+                        contentHash,
+                        byteSize,
+                        imageOutput -> blobStore.write(contentHash, 0, byteSize, imageOutput),
+                        offset,
+                        length,
+                        output);
+    }
+}
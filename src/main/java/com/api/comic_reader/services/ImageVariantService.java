@@ -0,0 +1,216 @@
+package com.api.comic_reader.services;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import com.api.comic_reader.repositories.ImagePlaceholderRepository;
+import com.api.comic_reader.repositories.ImageVariantRepository;
+import com.api.comic_reader.repositories.projections.ImageMetadata;
+import com.api.comic_reader.storage.BlobStore;
+import com.api.comic_reader.utils.BlurHashUtil;
+import com.api.comic_reader.utils.ImageUtil;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImageVariantService {
+    // This service generates downscaled variants of uploaded images, one per width of app.image-variants.widths that
+    // is smaller than the image, and picks the variant to serve for a requested width.
+    // It also computes the BlurHash placeholder of each image while the image is decoded for its variants, so images
+    // are decoded once, in the background, and never when they are read.
+    // Images are decoded from their blob file with subsampling, at about twice the width of their widest variant, so
+    // a large page never takes its full resolution in memory.
+    // Variants are generated on a bounded pool. When its queue is full, new images are skipped rather than processed
+    // on the uploading thread, and the placeholder backfill generates them later since they have no placeholder yet.
+
+    // The image to serve for a requested width
+    @Getter
+    public static class VariantSelection {
+        private final ImageMetadata metadata;
+
+        // Whether a variant closer to the requested width may be generated later, so the response must not be
+        // cached for long
+        private final boolean pending;
+
+        private VariantSelection(ImageMetadata metadata, boolean pending) {
+            this.metadata = metadata;
+            this.pending = pending;
+        }
+    }
+
+    // The width an image is decoded at when only its placeholder is needed, BlurHashUtil samples it down further
+    private static final int PLACEHOLDER_SOURCE_WIDTH = 64;
+
+    @Autowired
+    private ImageVariantRepository imageVariantRepository;
+
+    @Autowired
+    private ImagePlaceholderRepository imagePlaceholderRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Value("${app.image-variants.widths}")
+    private List<Integer> VARIANT_WIDTHS;
+
+    @Value("${app.image-variants.jpeg-quality}")
+    private float JPEG_QUALITY;
+
+    @Value("${app.image-variants.threads}")
+    private int THREADS;
+
+    @Value("${app.image-variants.queue-size}")
+    private int QUEUE_SIZE;
+
+    @Value("${app.image-variants.placeholder-backfill-batch-size}")
+    private int PLACEHOLDER_BACKFILL_BATCH_SIZE;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void startExecutor() {
+        executor = new ThreadPoolExecutor(
+                THREADS,
+                THREADS,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE),
+                new CustomizableThreadFactory("image-variant-"),
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @PreDestroy
+    void stopExecutor() {
+        executor.shutdown();
+    }
+
+    // This method generates the variants and the placeholder of an image in the background.
+    // The image data must already be in the blob store.
+    // If the pool is saturated, the image is left to the placeholder backfill.
+    public void processImageAsync(String sourceHash) {
+        executor.execute(() -> processImage(sourceHash));
+    }
+
+    // This method computes the placeholders of the images uploaded before placeholders existed, or skipped while the
+    // pool was saturated, along with their variants.
+    // Each run processes at most app.image-variants.placeholder-backfill-batch-size images, on the calling thread, so
+    // the backfill never competes with the variants of new uploads for the pool.
+    // The scheduler has a thread per job (spring.task.scheduling.pool.size), so a run does not delay the other jobs.
+    @Scheduled(
+            fixedDelayString = "${app.image-variants.placeholder-backfill-interval-ms}",
+            initialDelayString = "${app.image-variants.placeholder-backfill-interval-ms}")
+    public void backfillPlaceholders() {
+        List<String> contentHashes =
+                imagePlaceholderRepository.findContentHashesWithoutPlaceholder(PLACEHOLDER_BACKFILL_BATCH_SIZE);
+        contentHashes.forEach(this::processImage);
+        if (!contentHashes.isEmpty()) {
+            log.info("Computed the placeholders of {} images", contentHashes.size());
+        }
+    }
+
+    // This method returns the metadata of the image to serve for the requested width.
+    // It returns the smallest variant at least as wide as the requested width, or the original image if there is no
+    // such variant or no width was requested.
+    // The selection is pending if the original is returned only because the variant for the width may not be
+    // generated yet: the image is still in the database, or none of its variants exist and one would be wide enough.
+    public VariantSelection selectVariant(ImageMetadata original, Integer requestedWidth) {
+        if (requestedWidth == null || requestedWidth <= 0) {
+            return new VariantSelection(original, false);
+        }
+        if (Boolean.TRUE.equals(original.getIsStoredInDatabase())) {
+            return new VariantSelection(original, true);
+        }
+
+        Optional<ImageMetadata> variant =
+                imageVariantRepository.findSmallestVariantAtLeast(original.getContentHash(), requestedWidth);
+        if (variant.isPresent()) {
+            return new VariantSelection(variant.get(), false);
+        }
+        boolean pending = VARIANT_WIDTHS.stream().anyMatch(width -> width >= requestedWidth)
+                && !imageVariantRepository.existsBySourceHash(original.getContentHash());
+        return new VariantSelection(original, pending);
+    }
+
+    // This method computes the placeholder of an image and generates its variants that are smaller than the image,
+    // unless they already exist.
+    // Images that ImageIO cannot decode (e.g. WebP) have no placeholder and no variants, and are always served as
+    // uploaded. Their placeholder is saved as null, so they are not decoded again.
+    private void processImage(String sourceHash) {
+        try {
+            boolean needsPlaceholder = !imagePlaceholderRepository.existsById(sourceHash);
+            boolean needsVariants = !imageVariantRepository.existsBySourceHash(sourceHash);
+            if ((!needsPlaceholder && !needsVariants) || !blobStore.exists(sourceHash)) {
+                return;
+            }
+
+            // Only the header is read first, to know how much of the image the variants need
+            Path localFile = blobStore.getLocalFile(sourceHash).orElse(null);
+            byte[] data = (localFile == null) ? blobStore.read(sourceHash) : null;
+            Dimension dimensions =
+                    (localFile == null) ? ImageUtil.readDimensions(data) : ImageUtil.readDimensions(localFile);
+
+            List<Integer> variantWidths = (dimensions == null || !needsVariants)
+                    ? List.of()
+                    : VARIANT_WIDTHS.stream()
+                            .filter(width -> width < dimensions.width)
+                            .toList();
+
+            // The last halving steps of the resize filter the subsampled pixels, so twice the widest variant is kept
+            int decodeWidth =
+                    variantWidths.stream().mapToInt(width -> width * 2).max().orElse(PLACEHOLDER_SOURCE_WIDTH);
+            BufferedImage source = null;
+            if (dimensions != null) {
+                source = (localFile == null)
+                        ? ImageUtil.readSubsampled(data, decodeWidth)
+                        : ImageUtil.readSubsampled(localFile, decodeWidth);
+            }
+
+            if (needsPlaceholder) {
+                imagePlaceholderRepository.insertIfAbsent(
+                        sourceHash, (source == null) ? null : BlurHashUtil.encode(source));
+            }
+            if (source == null) {
+                return;
+            }
+
+            for (int maxWidth : variantWidths) {
+
+                BufferedImage scaled = ImageUtil.resizeToWidth(source, maxWidth);
+                byte[] variantData = ImageUtil.encode(scaled, JPEG_QUALITY);
+                String contentHash = ImageUtil.sha256Hex(variantData);
+
+                blobStore.put(contentHash, variantData);
+                imageVariantRepository.insertIfAbsent(
+                        sourceHash,
+                        maxWidth,
+                        contentHash,
+                        ImageUtil.detectContentType(variantData),
+                        variantData.length,
+                        scaled.getWidth(),
+                        scaled.getHeight());
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to process image {}", sourceHash, e);
+        }
+    }
+}
@@ -1,31 +1,41 @@
 package com.api.comic_reader.services;
 
+import java.util.List;
 import java.util.Optional;
 
 import jakarta.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 import com.api.comic_reader.dtos.requests.RatingRequest;
-import com.api.comic_reader.entities.ComicEntity;
-import com.api.comic_reader.entities.RatingEntity;
-import com.api.comic_reader.entities.UserEntity;
+import com.api.comic_reader.dtos.responses.ComicRatingResponse;
+import com.api.comic_reader.entities.ComicRatingStatsEntity;
 import com.api.comic_reader.exception.AppException;
 import com.api.comic_reader.exception.ErrorCode;
+import com.api.comic_reader.repositories.ComicRatingStatsRepository;
 import com.api.comic_reader.repositories.ComicRepository;
 import com.api.comic_reader.repositories.RatingRepository;
 import com.api.comic_reader.repositories.UserRepository;
+import com.api.comic_reader.repositories.projections.RatingUpsertResult;
+import com.api.comic_reader.utils.TransactionUtil;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 @EnableMethodSecurity()
 public class RatingService {
+    // The results of RatingRepository.upsertRating besides RATED
+    private static final String UPSERT_NOT_FOUND = "NOT_FOUND";
+    private static final String UPSERT_CONFLICT = "CONFLICT";
+
     @Autowired
     private RatingRepository ratingRepository;
 
@@ -35,57 +45,105 @@ public class RatingService {
     @Autowired
     private ComicRepository comicRepository;
 
-    // This method allows a user to rate a comic. It first checks if the user and the comic exist.
+    @Autowired
+    private ComicRatingStatsRepository comicRatingStatsRepository;
+
+    @Autowired
+    private ComicRankingService comicRankingService;
+
+    // This method allows a user to rate a comic.
     // If the user has not rated this comic before, it saves a new rating.
     // If the user has already rated this comic, it updates the existing rating.
+    // The rating and the rating stats of the comic are saved by a single upsert statement, so concurrent ratings of
+    // the same user, such as a double click, leave one rating and consistent stats.
     // This method requires the user to have either USER or ADMIN authority.
+    // It throws an exception if the score is not between 1 and 5, or if the user or the comic is not found.
     @Transactional
     @PreAuthorize("hasAuthority('SCOPE_USER') or hasAuthority('SCOPE_ADMIN')")
     public void rateComic(RatingRequest ratingRequest) throws AppException {
+        Long score = ratingRequest.getScore();
+        if (score == null || score < 1 || score > 5) {
+            throw new AppException(ErrorCode.INVALID_SCORE);
+        }
+
         var context = SecurityContextHolder.getContext();
         String name = context.getAuthentication().getName();
 
-        // Check if user exists
-        Optional<UserEntity> user = userRepository.findByUsername(name);
+        RatingUpsertResult result = ratingRepository.upsertRating(name, ratingRequest.getComicId(), score);
 
-        if (user.isEmpty()) {
-            throw new AppException(ErrorCode.USER_NOT_FOUND);
+        // A concurrent first rating of the same user was inserted meanwhile. It is committed now, so the second run
+        // updates it.
+        if (UPSERT_CONFLICT.equals(result.getStatus())) {
+            result = ratingRepository.upsertRating(name, ratingRequest.getComicId(), score);
         }
 
-        // Check if comic exists
-        Optional<ComicEntity> comic = comicRepository.findById(ratingRequest.getComicId());
-
-        if (comic.isEmpty()) {
+        if (UPSERT_NOT_FOUND.equals(result.getStatus())) {
+            if (userRepository.findByUsername(name).isEmpty()) {
+                throw new AppException(ErrorCode.USER_NOT_FOUND);
+            }
             throw new AppException(ErrorCode.COMIC_NOT_FOUND);
         }
 
-        // Check if user has rated this comic before
-        if (!ratingRepository.existsByComicAndUser(comic.get(), user.get())) {
-            ratingRepository.save(RatingEntity.builder()
-                    .comic(comic.get())
-                    .user(user.get())
-                    .score(ratingRequest.getScore())
-                    .build());
-        } else {
-            ratingRepository.updateByComicAndUser(comic.get(), user.get(), ratingRequest.getScore());
-        }
+        comicRankingService.recordRating(ratingRequest.getComicId(), result.getPreviousScore(), score);
     }
 
-    // This method returns the average rating of a comic. It first checks if the comic exists.
+    // This method returns the average rating of a comic.
     // If the comic has no ratings, it returns 0.
+    // It throws an exception if the comic is not found.
     public Double getComicAverageRating(Long comicId) throws AppException {
-        Optional<ComicEntity> comic = comicRepository.findById(comicId);
+        return getComicRating(comicId).getAverageScore();
+    }
 
-        if (comic.isEmpty()) {
-            throw new AppException(ErrorCode.COMIC_NOT_FOUND);
+    // This method returns the average rating of a comic, its number of ratings and the number of ratings of each
+    // score. They are read from the rating stats of the comic, in one row whatever its number of ratings.
+    // It throws an exception if the comic is not found.
+    public ComicRatingResponse getComicRating(Long comicId) throws AppException {
+        Optional<ComicRatingStatsEntity> statsOptional = comicRatingStatsRepository.findById(comicId);
+
+        // Only a comic without stats needs to be looked up, as stats are only kept for existing comics
+        if (statsOptional.isEmpty()) {
+            if (!comicRepository.existsById(comicId)) {
+                throw new AppException(ErrorCode.COMIC_NOT_FOUND);
+            }
+            return ComicRatingResponse.builder()
+                    .averageScore(0D)
+                    .ratingCount(0L)
+                    .starCounts(List.of(0L, 0L, 0L, 0L, 0L))
+                    .build();
         }
 
-        Double averageRating = ratingRepository.getComicAverageRating(comic.get());
+        ComicRatingStatsEntity stats = statsOptional.get();
+        return ComicRatingResponse.builder()
+                .averageScore(
+                        (stats.getRatingCount() == 0) ? 0D : (double) stats.getRatingSum() / stats.getRatingCount())
+                .ratingCount(stats.getRatingCount())
+                .starCounts(List.of(
+                        stats.getOneStarCount(),
+                        stats.getTwoStarCount(),
+                        stats.getThreeStarCount(),
+                        stats.getFourStarCount(),
+                        stats.getFiveStarCount()))
+                .build();
+    }
 
-        if (averageRating == null) {
-            return 0D;
+    // This method recomputes the rating stats of every comic from its ratings and fixes the ones that drifted, for
+    // example because of ratings changed directly in the database.
+    // The ratings cannot change while the stats are recomputed, which only takes one grouped query.
+    // The leaderboard of the top rated comics is then rebuilt from the stats.
+    // It returns the number of comics whose stats were fixed.
+    @Transactional
+    @Scheduled(
+            fixedDelayString = "${app.rating-stats.reconcile-interval-ms}",
+            initialDelayString = "${app.rating-stats.reconcile-interval-ms}")
+    public int reconcileRatingStats() {
+        comicRatingStatsRepository.lockRatings();
+        int fixedCount = comicRatingStatsRepository.rebuild();
+        if (fixedCount > 0) {
+            log.info("Fixed the rating stats of {} comics", fixedCount);
         }
 
-        return averageRating;
+        // Rank the comics with the fixed stats and the current mean of all ratings
+        TransactionUtil.afterCommit(comicRankingService::buildLeaderboard);
+        return fixedCount;
     }
 }
@@ -0,0 +1,95 @@
+package com.api.comic_reader.services;
+
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.api.comic_reader.dtos.requests.FilterGenresRequest;
+import com.api.comic_reader.enums.TrendingWindow;
+import com.api.comic_reader.search.HourlyEventCounter;
+
+import lombok.RequiredArgsConstructor;
+
+@Service
+@RequiredArgsConstructor
+public class TrendingService {
+    // This service ranks the comics by how much their chapters are read lately.
+    // Each chapter opening is counted in memory, in the hourly buckets of the comic, and the ranking of each window
+    // is recomputed periodically from the counts, decayed with their age. Requests are served from the last ranking,
+    // so neither counting nor ranking touches the database.
+    // Each instance counts its own reads and the counts are lost on restart, so the ranking reflects the reads
+    // served by this instance since it started.
+
+    private static final long MILLIS_PER_HOUR = 3_600_000L;
+
+    @Autowired
+    private ComicFilterService comicFilterService;
+
+    @Value("${app.trending.retention-hours}")
+    private int RETENTION_HOURS;
+
+    @Value("${app.trending.max-results}")
+    private int MAX_RESULTS;
+
+    private HourlyEventCounter readCounter;
+
+    // The last ranking of each window, replaced as a whole by each refresh
+    private volatile Map<TrendingWindow, List<Long>> rankings = new EnumMap<>(TrendingWindow.class);
+
+    // This method creates the read counter, which keeps the counts of the last app.trending.retention-hours hours.
+    // A window longer than the retention period only covers the retention period.
+    @PostConstruct
+    public void createCounter() {
+        readCounter = new HourlyEventCounter(RETENTION_HOURS);
+    }
+
+    // This method records that a chapter of a comic was opened.
+    // It only updates an in-memory counter, without locking.
+    public void recordRead(Long comicId) {
+        readCounter.record(comicId, currentHour());
+    }
+
+    // This method returns the IDs of the trending comics of a window, most trending first.
+    // At most app.trending.max-results IDs are returned.
+    public List<Long> getTrending(TrendingWindow window) {
+        return rankings.getOrDefault(window, List.of());
+    }
+
+    // This method ranks the comics that are not deleted for each window, and forgets the comics that have not
+    // been read during the retention period.
+    @Scheduled(
+            fixedDelayString = "${app.trending.refresh-interval-ms}",
+            initialDelayString = "${app.trending.refresh-interval-ms}")
+    public void refreshRankings() {
+        long hour = currentHour();
+        readCounter.removeIdle(hour);
+        BitSet activeComicIds = comicFilterService.filter(new FilterGenresRequest());
+
+        Map<TrendingWindow, List<Long>> refreshed = new EnumMap<>(TrendingWindow.class);
+        for (TrendingWindow window : TrendingWindow.values()) {
+            Map<Long, Double> scores = readCounter.decayedCounts(hour, window.getHours(), window.getHalfLifeHours());
+            List<Long> ranking = scores.keySet().stream()
+                    .filter(comicId -> activeComicIds.get(Math.toIntExact(comicId)))
+                    .sorted(Comparator.comparing((Long comicId) -> scores.get(comicId))
+                            .reversed()
+                            .thenComparing(Comparator.naturalOrder()))
+                    .limit(MAX_RESULTS)
+                    .toList();
+            refreshed.put(window, ranking);
+        }
+        rankings = refreshed;
+    }
+
+    private static long currentHour() {
+        return System.currentTimeMillis() / MILLIS_PER_HOUR;
+    }
+}
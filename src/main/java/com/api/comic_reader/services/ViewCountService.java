@@ -0,0 +1,137 @@
+package com.api.comic_reader.services;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ViewCountService {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    // The views that have not been written to the database yet, by comic ID.
+    // Entries are never removed, so an increment can never be lost between a flush and a removal.
+    private final Map<Long, LongAdder> pendingViews = new ConcurrentHashMap<>();
+
+    // The total number of pending views, used to flush early when too many views could be lost on a crash
+    private final AtomicLong pendingTotal = new AtomicLong();
+
+    // Only one flush runs at a time
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // Whether an early flush has been handed to the scheduler and has not finished yet
+    private final AtomicBoolean earlyFlushScheduled = new AtomicBoolean();
+
+    @Value("${app.view-count.max-pending}")
+    private long MAX_PENDING;
+
+    // This method records one view of a comic.
+    // The view is only kept in memory and is written to the database by the next flush.
+    // If too many views are pending, a flush is handed to the scheduler. The calling thread never writes to the
+    // database, so the flush does not join its transaction nor delay its response.
+    public void increaseView(Long comicId) {
+        pendingViews.computeIfAbsent(comicId, id -> new LongAdder()).increment();
+
+        if (pendingTotal.incrementAndGet() >= MAX_PENDING && earlyFlushScheduled.compareAndSet(false, true)) {
+            taskScheduler.schedule(
+                    () -> {
+                        try {
+                            flush();
+                        } finally {
+                            earlyFlushScheduled.set(false);
+                        }
+                    },
+                    Instant.now());
+        }
+    }
+
+    // This method returns the number of views of a comic that have not been written to the database yet.
+    public long getPendingViews(Long comicId) {
+        LongAdder views = pendingViews.get(comicId);
+        return (views == null) ? 0L : views.sum();
+    }
+
+    // This method returns the persisted view count of a comic plus its pending views.
+    public Long withPendingViews(Long comicId, Long persistedViews) {
+        return ((persistedViews == null) ? 0L : persistedViews) + getPendingViews(comicId);
+    }
+
+    // This method writes the pending views to the database periodically.
+    // The interval bounds, together with app.view-count.max-pending, how many views can be lost on a crash.
+    @Scheduled(
+            fixedDelayString = "${app.view-count.flush-interval-ms}",
+            initialDelayString = "${app.view-count.flush-interval-ms}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushPendingViews();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // This method writes the remaining pending views to the database on graceful shutdown.
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    // This method adds the pending views to the comics in one batched UPDATE.
+    // The flushed views stay pending until the UPDATE succeeds, so readers never miss them while it runs, and a failed
+    // UPDATE leaves them for the next flush.
+    private void flushPendingViews() {
+        List<Object[]> batch = new ArrayList<>();
+        long flushedTotal = 0L;
+
+        // Update the rows in ID order, so concurrent flushes of other instances cannot deadlock
+        List<Long> comicIds = new ArrayList<>(pendingViews.keySet());
+        comicIds.sort(null);
+        for (Long comicId : comicIds) {
+            long views = pendingViews.get(comicId).sum();
+            if (views > 0) {
+                batch.add(new Object[] {views, comicId});
+                flushedTotal += views;
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate("UPDATE comic SET view = view + ? WHERE id = ?", batch);
+        } catch (RuntimeException e) {
+            log.error("Failed to flush the views of {} comics, they will be retried", batch.size(), e);
+            return;
+        }
+
+        // Only the flushed views are subtracted, the views recorded during the UPDATE stay pending
+        for (Object[] row : batch) {
+            pendingViews.get((Long) row[1]).add(-(Long) row[0]);
+        }
+        pendingTotal.addAndGet(-flushedTotal);
+    }
+}
@@ -0,0 +1,36 @@
+package com.api.comic_reader.storage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+
+// This interface is the storage of image data outside of the database.
+// Blobs are addressed by the SHA-256 hash of their content, so identical images are stored once and a stored blob
+// never changes.
+// The implementation is selected with the app.storage.type property.
+public interface BlobStore {
+    // This method stores the given data under its content hash.
+    // It does nothing if a blob with this hash is already stored.
+    void put(String contentHash, byte[] data) throws IOException;
+
+    // This method stores the content of the given file under its content hash, without reading it into memory.
+    // It does nothing if a blob with this hash is already stored. The given file is left untouched.
+    void putFile(String contentHash, Path file) throws IOException;
+
+    // This method checks whether a blob with the given content hash is stored.
+    boolean exists(String contentHash);
+
+    // This method reads a whole blob.
+    // It throws an exception if the blob is not stored.
+    byte[] read(String contentHash) throws IOException;
+
+    // This method writes a range of a blob to the given output stream.
+    // It throws an exception if the blob is not stored or is shorter than the range.
+    void write(String contentHash, long offset, long length, OutputStream outputStream) throws IOException;
+
+    // This method returns the file of a blob if the store keeps its blobs on the local filesystem.
+    // It lets the servlet container send the file without copying it through the JVM (sendfile).
+    // It returns an empty Optional for remote stores or if the blob is not stored.
+    Optional<Path> getLocalFile(String contentHash);
+}
@@ -0,0 +1,140 @@
+package com.api.comic_reader.storage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// This class stores blobs as files on the local filesystem.
+// A blob is stored in <root>/<hash[0..2]>/<hash[2..4]>/<hash>, so no directory holds too many files.
+// Files are written to a temporary file first and then renamed, so a blob is either complete or absent.
+@Component
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "filesystem", matchIfMissing = true)
+public class FileSystemBlobStore implements BlobStore {
+    private static final Pattern CONTENT_HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path root;
+
+    public FileSystemBlobStore(@Value("${app.storage.filesystem.root}") String root) throws IOException {
+        this.root = Path.of(root).toAbsolutePath().normalize();
+        Files.createDirectories(this.root);
+    }
+
+    @Override
+    public void put(String contentHash, byte[] data) throws IOException {
+        writeBlob(contentHash, channel -> {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        });
+    }
+
+    @Override
+    public void putFile(String contentHash, Path source) throws IOException {
+        writeBlob(contentHash, channel -> {
+            try (FileChannel sourceChannel = FileChannel.open(source, StandardOpenOption.READ)) {
+                // transferTo lets the kernel copy the file, its content never enters the JVM
+                long size = sourceChannel.size();
+                long position = 0;
+                while (position < size) {
+                    long transferred = sourceChannel.transferTo(position, size - position, channel);
+                    if (transferred <= 0) {
+                        throw new IOException("File " + source + " was truncated while it was stored");
+                    }
+                    position += transferred;
+                }
+            }
+        });
+    }
+
+    // This method writes a blob to a temporary file with the given writer, then renames it to the blob file.
+    // It does nothing if the blob is already stored.
+    private void writeBlob(String contentHash, BlobWriter writer) throws IOException {
+        Path file = resolve(contentHash);
+        if (Files.exists(file)) {
+            return;
+        }
+
+        Files.createDirectories(file.getParent());
+        Path temporaryFile = Files.createTempFile(file.getParent(), contentHash, ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+                writer.write(channel);
+                // The database row that references the blob is committed afterwards, so the blob must be durable
+                channel.force(true);
+            }
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    @Override
+    public boolean exists(String contentHash) {
+        return Files.exists(resolve(contentHash));
+    }
+
+    @Override
+    public byte[] read(String contentHash) throws IOException {
+        return Files.readAllBytes(resolve(contentHash));
+    }
+
+    @Override
+    public void write(String contentHash, long offset, long length, OutputStream outputStream) throws IOException {
+        try (FileChannel channel = FileChannel.open(resolve(contentHash), StandardOpenOption.READ)) {
+            // transferTo lets the kernel copy the file when the target allows it, and uses a small buffer otherwise
+            WritableByteChannel target = Channels.newChannel(outputStream);
+            long position = offset;
+            long remaining = length;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    throw new IOException("Blob " + contentHash + " is shorter than the requested range");
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+
+    @Override
+    public Optional<Path> getLocalFile(String contentHash) {
+        Path file = resolve(contentHash);
+        return Files.exists(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    // This interface writes the content of a blob to its temporary file.
+    @FunctionalInterface
+    private interface BlobWriter {
+        void write(FileChannel channel) throws IOException;
+    }
+
+    // This method returns the path of a blob.
+    // The hash is validated, so it can never point outside of the root directory.
+    private Path resolve(String contentHash) {
+        if (contentHash == null || !CONTENT_HASH_PATTERN.matcher(contentHash).matches()) {
+            throw new IllegalArgumentException("Invalid content hash: " + contentHash);
+        }
+        return root.resolve(contentHash.substring(0, 2))
+                .resolve(contentHash.substring(2, 4))
+                .resolve(contentHash);
+    }
+}
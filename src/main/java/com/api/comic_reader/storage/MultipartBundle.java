@@ -0,0 +1,151 @@
+package com.api.comic_reader.storage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+
+// This class is a multipart/mixed body (RFC 2046) whose parts are read on demand, used to send several images in one
+// response.
+// Like StoredZipArchive, its layout is known from the headers and sizes of its parts alone, so its size is known
+// before a single byte is written and any range of it can be written without writing what comes before.
+// The boundary is derived from the hash of the parts, so the same parts always give the same bytes.
+public class MultipartBundle {
+    private static final String CRLF = "\r\n";
+
+    // This interface writes a range of the data of a part to an output stream.
+    @FunctionalInterface
+    public interface PartData {
+        void write(long offset, long length, OutputStream outputStream) throws IOException;
+    }
+
+    // A part of the bundle
+    @Getter
+    @Builder
+    public static class Part {
+        private final String contentType;
+        private final long size;
+
+        // The hash of the part data, so the hash of the bundle changes with its content
+        private final String contentHash;
+
+        // The headers of the part besides Content-Type and Content-Length, in order
+        @Singular
+        private final Map<String, String> headers;
+
+        private final PartData data;
+    }
+
+    // A contiguous part of the body: a delimiter with headers, or the data of a part
+    private static class Segment {
+        private final long start;
+        private final long length;
+        private final PartData data;
+
+        private Segment(long start, long length, PartData data) {
+            this.start = start;
+            this.length = length;
+            this.data = data;
+        }
+    }
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final String boundary;
+    private final long size;
+    private final String contentHash;
+
+    // This constructor computes the layout of the bundle, it does not read any part data.
+    public MultipartBundle(List<Part> parts) {
+        MessageDigest digest = newSha256Digest();
+        List<String> partHeaders = new ArrayList<>();
+        for (Part part : parts) {
+            StringBuilder headers = new StringBuilder();
+            headers.append("Content-Type: ").append(part.getContentType()).append(CRLF);
+            headers.append("Content-Length: ").append(part.getSize()).append(CRLF);
+            part.getHeaders()
+                    .forEach((name, value) ->
+                            headers.append(name).append(": ").append(value).append(CRLF));
+            partHeaders.add(headers.toString());
+
+            digest.update(headers.toString().getBytes(StandardCharsets.UTF_8));
+            digest.update(part.getContentHash().getBytes(StandardCharsets.US_ASCII));
+        }
+        this.contentHash = HexFormat.of().formatHex(digest.digest());
+
+        // A boundary must not occur in the data, 128 bits of a hash make that as unlikely as a hash collision
+        this.boundary = "page-" + contentHash.substring(0, 32);
+
+        long offset = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            Part part = parts.get(i);
+            String delimiter = (i == 0) ? "--" + boundary + CRLF : CRLF + "--" + boundary + CRLF;
+            offset = addText(offset, delimiter + partHeaders.get(i) + CRLF);
+            segments.add(new Segment(offset, part.getSize(), part.getData()));
+            offset += part.getSize();
+        }
+        offset = addText(offset, CRLF + "--" + boundary + "--" + CRLF);
+
+        this.size = offset;
+    }
+
+    // This method returns the content type of the bundle, with its boundary.
+    public String getContentType() {
+        return "multipart/mixed; boundary=" + boundary;
+    }
+
+    // This method returns the size of the bundle in bytes.
+    public long getSize() {
+        return size;
+    }
+
+    // This method returns a SHA-256 hash that changes whenever a byte of the bundle changes, used as its ETag.
+    // It is computed from the headers and the hashes of the parts, without reading their data.
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    // This method writes a range of the bundle to the given output stream.
+    // Only the parts that overlap the range are read, in order.
+    public void write(long offset, long length, OutputStream outputStream) throws IOException {
+        long end = offset + length;
+        for (Segment segment : segments) {
+            long segmentEnd = segment.start + segment.length;
+            if (segmentEnd <= offset) {
+                continue;
+            }
+            if (segment.start >= end) {
+                break;
+            }
+
+            long from = Math.max(offset, segment.start);
+            long to = Math.min(end, segmentEnd);
+            segment.data.write(from - segment.start, to - from, outputStream);
+        }
+    }
+
+    // This method adds a delimiter or headers to the bundle and returns the offset after it.
+    private long addText(long offset, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        PartData data = (from, length, outputStream) -> outputStream.write(bytes, (int) from, (int) length);
+        segments.add(new Segment(offset, bytes.length, data));
+        return offset + bytes.length;
+    }
+
+    private static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.api.comic_reader.storage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.api.comic_reader.dtos.responses.ImageCacheStatsResponse;
+
+// This class caches image data outside of the Java heap, so cached images do not grow the old generation.
+// The memory is allocated lazily as direct ByteBuffer slabs, which are split into fixed-size pages. An image is
+// stored in as many pages as it needs, so the cache is bounded in bytes rather than in entries.
+// Entries are keyed by content hash. Images are immutable for a given hash, so an entry never becomes stale.
+// An image is copied into its pages from the stream of its storage, so a miss never builds a copy of it on the heap.
+// Eviction is a segmented LRU: new entries go to the probation segment and are promoted to the protected segment on
+// their second hit, so a burst of one-off reads cannot flush the images that are read again and again.
+@Component
+public class OffHeapImageCache {
+    // The storage of an image, which writes the whole image to the output stream it is given
+    @FunctionalInterface
+    public interface ImageSource {
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
+    // The share of the pages that the protected segment may hold
+    private static final double PROTECTED_RATIO = 0.8;
+
+    // The number of pages of a slab
+    private static final int PAGES_PER_SLAB = 64;
+
+    private final int pageSize;
+    private final int totalPages;
+    private final int protectedCapacity;
+    private final long maxEntryBytes;
+
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private final int[] freePages;
+    private int freePageCount;
+    private int allocatedPageCount;
+
+    // Both segments are in access order, their first entry is the least recently used
+    private final LinkedHashMap<String, CachedImage> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, CachedImage> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private int protectedPageCount;
+    private long usedBytes;
+
+    // Guards the segments, the pages and the pin counts.
+    // Cached data is read without holding it, so a slow client never blocks the other requests.
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public OffHeapImageCache(
+            @Value("${app.image-cache.capacity-bytes}") long capacityBytes,
+            @Value("${app.image-cache.page-size-bytes}") int pageSize,
+            @Value("${app.image-cache.max-entry-bytes}") long maxEntryBytes) {
+        this.pageSize = pageSize;
+        this.totalPages = (int) Math.min(Integer.MAX_VALUE, capacityBytes / pageSize);
+        this.protectedCapacity = (int) (totalPages * PROTECTED_RATIO);
+        this.maxEntryBytes = Math.min(maxEntryBytes, (long) totalPages * pageSize);
+        this.freePages = new int[totalPages];
+    }
+
+    // This method checks whether an image of the given size may be cached.
+    public boolean accepts(long byteSize) {
+        return byteSize > 0 && byteSize <= maxEntryBytes;
+    }
+
+    // This method writes a range of a cached image to the given output stream.
+    // It returns false, and writes nothing, if the image is not cached.
+    public boolean write(String contentHash, long offset, long length, OutputStream outputStream) throws IOException {
+        CachedImage entry = pin(contentHash);
+        if (entry == null) {
+            misses.increment();
+            return false;
+        }
+        hits.increment();
+
+        try {
+            writePages(entry, offset, length, outputStream);
+        } finally {
+            unpin(entry);
+        }
+        return true;
+    }
+
+    // This method caches an image of the given size from its source, then writes a range of it to the given output
+    // stream.
+    // The pages are reserved first and filled from the source without holding the lock, so readers are not blocked
+    // while the image is loaded.
+    // It returns false, and writes nothing, if the image is too large, if all pages are in use by readers, or if the
+    // source does not write exactly byteSize bytes.
+    public boolean putAndWrite(
+            String contentHash, long byteSize, ImageSource source, long offset, long length, OutputStream outputStream)
+            throws IOException {
+        if (!accepts(byteSize)) {
+            return false;
+        }
+        int pageCount = (int) ((byteSize + pageSize - 1) / pageSize);
+
+        CachedImage entry;
+        lock.lock();
+        try {
+            while (freePageCount + (totalPages - allocatedPageCount) < pageCount) {
+                if (!evictOne()) {
+                    return false;
+                }
+            }
+            int[] pages = new int[pageCount];
+            for (int i = 0; i < pageCount; i++) {
+                pages[i] = takePage();
+            }
+            // The entry is pinned and in no segment while it is filled, so its pages cannot be evicted
+            entry = new CachedImage(pages, (int) byteSize);
+            entry.pins++;
+        } finally {
+            lock.unlock();
+        }
+
+        boolean filled = false;
+        try {
+            PageOutputStream pageOutput = new PageOutputStream(entry);
+            source.writeTo(pageOutput);
+            filled = pageOutput.position == entry.length;
+        } finally {
+            if (!filled) {
+                entry.removed = true;
+                unpin(entry);
+            }
+        }
+        if (!filled) {
+            return false;
+        }
+
+        lock.lock();
+        try {
+            // Another request may have cached the same image meanwhile, its entry is kept
+            if (probation.containsKey(contentHash) || protectedSegment.containsKey(contentHash)) {
+                entry.removed = true;
+            } else {
+                probation.put(contentHash, entry);
+                usedBytes += entry.length;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            writePages(entry, offset, length, outputStream);
+        } finally {
+            unpin(entry);
+        }
+        return true;
+    }
+
+    // This method removes an image from the cache.
+    public void invalidate(String contentHash) {
+        if (contentHash == null) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            CachedImage entry = probation.remove(contentHash);
+            if (entry == null) {
+                entry = protectedSegment.remove(contentHash);
+                if (entry != null) {
+                    protectedPageCount -= entry.pages.length;
+                }
+            }
+            if (entry != null) {
+                release(entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // This method returns the statistics of the cache.
+    public ImageCacheStatsResponse getStats() {
+        lock.lock();
+        try {
+            long hitCount = hits.sum();
+            long missCount = misses.sum();
+            long requestCount = hitCount + missCount;
+
+            return ImageCacheStatsResponse.builder()
+                    .capacityBytes((long) totalPages * pageSize)
+                    .allocatedBytes((long) allocatedPageCount * pageSize)
+                    .usedBytes(usedBytes)
+                    .entryCount(probation.size() + protectedSegment.size())
+                    .hitCount(hitCount)
+                    .missCount(missCount)
+                    .evictionCount(evictions.sum())
+                    .hitRate(requestCount == 0 ? 0.0 : (double) hitCount / requestCount)
+                    .build();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // This method finds an entry, records the access in its segment and pins it, so its pages are not reused while
+    // they are read.
+    private CachedImage pin(String contentHash) {
+        lock.lock();
+        try {
+            CachedImage entry = protectedSegment.get(contentHash);
+            if (entry == null) {
+                entry = probation.remove(contentHash);
+                if (entry == null) {
+                    return null;
+                }
+                // Second hit: promote the entry, and demote the least recently used protected entries if needed
+                protectedSegment.put(contentHash, entry);
+                protectedPageCount += entry.pages.length;
+                Iterator<Map.Entry<String, CachedImage>> eldest =
+                        protectedSegment.entrySet().iterator();
+                while (protectedPageCount > protectedCapacity && eldest.hasNext()) {
+                    Map.Entry<String, CachedImage> demoted = eldest.next();
+                    if (demoted.getValue() == entry) {
+                        continue;
+                    }
+                    eldest.remove();
+                    protectedPageCount -= demoted.getValue().pages.length;
+                    probation.put(demoted.getKey(), demoted.getValue());
+                }
+            }
+            entry.pins++;
+            return entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void unpin(CachedImage entry) {
+        lock.lock();
+        try {
+            entry.pins--;
+            if (entry.removed && entry.pins == 0) {
+                freePages(entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // This method writes a range of the pages of a pinned entry to the given output stream.
+    private void writePages(CachedImage entry, long offset, long length, OutputStream outputStream) throws IOException {
+        WritableByteChannel channel = Channels.newChannel(outputStream);
+        long position = offset;
+        long end = Math.min(offset + length, entry.length);
+        while (position < end) {
+            int page = entry.pages[(int) (position / pageSize)];
+            int pageOffset = (int) (position % pageSize);
+            int count = (int) Math.min(pageSize - pageOffset, end - position);
+
+            ByteBuffer slice = pageBuffer(page);
+            int start = slice.position() + pageOffset;
+            slice.position(start).limit(start + count);
+            while (slice.hasRemaining()) {
+                channel.write(slice);
+            }
+            position += count;
+        }
+    }
+
+    // This method evicts the least recently used entry of the probation segment, or of the protected segment if the
+    // probation segment is empty.
+    // It returns false if there is nothing left to evict.
+    private boolean evictOne() {
+        LinkedHashMap<String, CachedImage> segment = probation.isEmpty() ? protectedSegment : probation;
+        Iterator<CachedImage> iterator = segment.values().iterator();
+        if (!iterator.hasNext()) {
+            return false;
+        }
+
+        CachedImage entry = iterator.next();
+        iterator.remove();
+        if (segment == protectedSegment) {
+            protectedPageCount -= entry.pages.length;
+        }
+        evictions.increment();
+        release(entry);
+        return true;
+    }
+
+    // This method marks an entry as removed, and frees its pages unless a reader still uses them.
+    private void release(CachedImage entry) {
+        entry.removed = true;
+        usedBytes -= entry.length;
+        if (entry.pins == 0) {
+            freePages(entry);
+        }
+    }
+
+    private void freePages(CachedImage entry) {
+        for (int page : entry.pages) {
+            freePages[freePageCount++] = page;
+        }
+    }
+
+    // This method takes a free page, allocating a new slab if every allocated page is in use.
+    private int takePage() {
+        if (freePageCount > 0) {
+            return freePages[--freePageCount];
+        }
+        if (allocatedPageCount % PAGES_PER_SLAB == 0) {
+            int slabPages = Math.min(PAGES_PER_SLAB, totalPages - allocatedPageCount);
+            slabs.add(ByteBuffer.allocateDirect(slabPages * pageSize));
+        }
+        return allocatedPageCount++;
+    }
+
+    // This method returns a buffer positioned on a page, with its limit at the end of the page.
+    // Each call returns a new view, so concurrent readers do not share positions.
+    private ByteBuffer pageBuffer(int page) {
+        ByteBuffer slab = slabs.get(page / PAGES_PER_SLAB).duplicate();
+        int offset = (page % PAGES_PER_SLAB) * pageSize;
+        slab.position(offset).limit(offset + pageSize);
+        return slab;
+    }
+
+    // An output stream that fills the reserved pages of an entry in order.
+    // It only counts the bytes past the size of the entry, so a source larger than expected is detected, not stored.
+    private class PageOutputStream extends OutputStream {
+        private final CachedImage entry;
+        private long position;
+
+        private PageOutputStream(CachedImage entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int count) {
+            while (count > 0 && position < entry.length) {
+                int pageOffset = (int) (position % pageSize);
+                int chunk = (int) Math.min(Math.min(pageSize - pageOffset, count), entry.length - position);
+
+                ByteBuffer page = pageBuffer(entry.pages[(int) (position / pageSize)]);
+                page.position(page.position() + pageOffset);
+                page.put(data, offset, chunk);
+
+                position += chunk;
+                offset += chunk;
+                count -= chunk;
+            }
+            position += count;
+        }
+    }
+
+    // An image stored in the cache, with the pages holding its data in order
+    private static class CachedImage {
+        private final int[] pages;
+        private final int length;
+        private int pins;
+        private boolean removed;
+
+        private CachedImage(int[] pages, int length) {
+            this.pages = pages;
+            this.length = length;
+        }
+    }
+}
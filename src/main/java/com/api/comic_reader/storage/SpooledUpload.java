@@ -0,0 +1,104 @@
+package com.api.comic_reader.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import lombok.Getter;
+
+// This class is an upload copied to a temporary file.
+// The SHA-256 hash, the CRC-32, the size and the first bytes of the upload are computed while it is copied, so the
+// upload is never held in memory as a whole, whatever its size.
+// The temporary file is deleted when the upload is closed.
+@Getter
+public class SpooledUpload implements AutoCloseable {
+    // The number of leading bytes kept to detect the content type, enough for every format of ImageUtil
+    private static final int HEADER_SIZE = 16;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final String contentHash;
+    private final long crc32;
+    private final long byteSize;
+    private final byte[] header;
+
+    // Whether the upload is larger than the limit it was spooled with, in which case only the beginning was copied
+    private final boolean truncated;
+
+    private SpooledUpload(Path file, String contentHash, long crc32, long byteSize, byte[] header, boolean truncated) {
+        this.file = file;
+        this.contentHash = contentHash;
+        this.crc32 = crc32;
+        this.byteSize = byteSize;
+        this.header = header;
+        this.truncated = truncated;
+    }
+
+    // This method copies an input stream to a temporary file, reading at most one byte more than the given limit.
+    // The caller must close the returned upload, and must check isTruncated() before using it.
+    public static SpooledUpload spool(InputStream input, long maxBytes) throws IOException {
+        MessageDigest digest = newSha256Digest();
+        CRC32 crc = new CRC32();
+        Path file = Files.createTempFile("upload-", ".tmp");
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            byte[] header = new byte[HEADER_SIZE];
+            int headerLength = 0;
+            long byteSize = 0;
+
+            try (OutputStream output =
+                    new CheckedOutputStream(new DigestOutputStream(Files.newOutputStream(file), digest), crc)) {
+                int read;
+                while (byteSize <= maxBytes && (read = input.read(buffer, 0, readLength(maxBytes, byteSize))) != -1) {
+                    if (headerLength < HEADER_SIZE) {
+                        int count = Math.min(read, HEADER_SIZE - headerLength);
+                        System.arraycopy(buffer, 0, header, headerLength, count);
+                        headerLength += count;
+                    }
+                    output.write(buffer, 0, read);
+                    byteSize += read;
+                }
+            }
+
+            return new SpooledUpload(
+                    file,
+                    HexFormat.of().formatHex(digest.digest()),
+                    crc.getValue(),
+                    byteSize,
+                    Arrays.copyOf(header, headerLength),
+                    byteSize > maxBytes);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    // This method returns how many bytes to read next, so that at most one byte more than the limit is read.
+    private static int readLength(long maxBytes, long byteSize) {
+        return (int) Math.min(BUFFER_SIZE, maxBytes + 1 - byteSize);
+    }
+
+    private static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
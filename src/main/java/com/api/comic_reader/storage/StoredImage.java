@@ -0,0 +1,24 @@
+package com.api.comic_reader.storage;
+
+import lombok.*;
+
+// This class describes an image stored in the blob store.
+// Its fields are the metadata kept in the database, the image data itself is only kept in the blob store.
+@Getter
+@Builder
+@AllArgsConstructor
+public class StoredImage {
+    private String contentHash;
+
+    private String contentType;
+
+    private long byteSize;
+
+    // The dimensions are null if the format cannot be decoded by ImageIO (e.g. WebP)
+    private Integer width;
+
+    private Integer height;
+
+    // The CRC-32 of the image data, written in the headers of the CBZ archives that contain the image
+    private Long crc32;
+}
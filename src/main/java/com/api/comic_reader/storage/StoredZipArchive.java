@@ -0,0 +1,231 @@
+package com.api.comic_reader.storage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Getter;
+
+// This class is a ZIP archive whose entries are STORED, i.e. not compressed, and whose data is read on demand.
+// Images are already compressed, so compressing them again would only cost CPU.
+// As nothing is compressed, the layout of the archive is known from the names, sizes and CRC-32 of its entries alone:
+// its size is known before a single byte is written, and any range of it can be written without writing what comes
+// before, which allows Content-Length and resumable downloads.
+// The archive does not use ZIP64, so it is limited to 65535 entries and 4 GiB.
+public class StoredZipArchive {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+
+    // Version 1.0 is enough to extract STORED entries, 2.0 is the version of the format that is written
+    private static final short VERSION_NEEDED = 10;
+    private static final short VERSION_MADE_BY = 20;
+
+    // The names of the entries are encoded in UTF-8
+    private static final short UTF8_FLAG = 0x0800;
+    private static final short STORED = 0;
+
+    private static final long MAX_ENTRIES = 0xFFFF;
+    private static final long MAX_SIZE = 0xFFFFFFFFL;
+
+    // This interface writes a range of the data of an entry to an output stream.
+    @FunctionalInterface
+    public interface EntryData {
+        void write(long offset, long length, OutputStream outputStream) throws IOException;
+    }
+
+    // An entry of the archive
+    @Getter
+    @Builder
+    public static class Entry {
+        private final String name;
+        private final long size;
+        private final long crc32;
+        private final LocalDateTime modifiedAt;
+
+        // The hash of the entry data, so the hash of the archive changes with its content
+        private final String contentHash;
+
+        private final EntryData data;
+    }
+
+    // A contiguous part of the archive: a header or the data of an entry
+    private static class Segment {
+        private final long start;
+        private final long length;
+        private final EntryData data;
+
+        private Segment(long start, long length, EntryData data) {
+            this.start = start;
+            this.length = length;
+            this.data = data;
+        }
+    }
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final long size;
+    private final String contentHash;
+
+    // This constructor computes the layout of the archive, it does not read any entry data.
+    // It throws an IllegalArgumentException if the archive would need ZIP64.
+    public StoredZipArchive(List<Entry> entries) {
+        if (entries.size() > MAX_ENTRIES) {
+            throw new IllegalArgumentException("An archive cannot have more than " + MAX_ENTRIES + " entries");
+        }
+
+        MessageDigest digest = newSha256Digest();
+        ByteBuffer centralDirectory =
+                ByteBuffer.allocate(centralDirectorySize(entries)).order(ByteOrder.LITTLE_ENDIAN);
+        long offset = 0;
+
+        for (Entry entry : entries) {
+            byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+            int dosTime = toDosTime(entry.getModifiedAt());
+
+            ByteBuffer localHeader =
+                    ByteBuffer.allocate(LOCAL_HEADER_SIZE + name.length).order(ByteOrder.LITTLE_ENDIAN);
+            localHeader.putInt(LOCAL_HEADER_SIGNATURE);
+            localHeader.putShort(VERSION_NEEDED);
+            putCommonFields(localHeader, entry, dosTime);
+            localHeader.putShort((short) name.length);
+            localHeader.putShort((short) 0); // extra field length
+            localHeader.put(name);
+
+            centralDirectory.putInt(CENTRAL_HEADER_SIGNATURE);
+            centralDirectory.putShort(VERSION_MADE_BY);
+            centralDirectory.putShort(VERSION_NEEDED);
+            putCommonFields(centralDirectory, entry, dosTime);
+            centralDirectory.putShort((short) name.length);
+            centralDirectory.putShort((short) 0); // extra field length
+            centralDirectory.putShort((short) 0); // comment length
+            centralDirectory.putShort((short) 0); // disk number
+            centralDirectory.putShort((short) 0); // internal attributes
+            centralDirectory.putInt(0); // external attributes
+            centralDirectory.putInt((int) offset);
+            centralDirectory.put(name);
+
+            offset = addBytes(offset, localHeader.array(), digest);
+            segments.add(new Segment(offset, entry.getSize(), entry.getData()));
+            digest.update(entry.getContentHash().getBytes(StandardCharsets.US_ASCII));
+            offset += entry.getSize();
+            checkSize(offset);
+        }
+
+        long centralDirectoryOffset = offset;
+        offset = addBytes(offset, centralDirectory.array(), digest);
+
+        ByteBuffer end = ByteBuffer.allocate(END_OF_CENTRAL_DIRECTORY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        end.putInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        end.putShort((short) 0); // disk number
+        end.putShort((short) 0); // disk of the central directory
+        end.putShort((short) entries.size());
+        end.putShort((short) entries.size());
+        end.putInt(centralDirectory.capacity());
+        end.putInt((int) centralDirectoryOffset);
+        end.putShort((short) 0); // comment length
+        offset = addBytes(offset, end.array(), digest);
+        checkSize(offset);
+
+        this.size = offset;
+        this.contentHash = HexFormat.of().formatHex(digest.digest());
+    }
+
+    // This method returns the size of the archive in bytes.
+    public long getSize() {
+        return size;
+    }
+
+    // This method returns a SHA-256 hash that changes whenever a byte of the archive changes, used as its ETag.
+    // It is computed from the headers and the hashes of the entries, without reading their data.
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    // This method writes a range of the archive to the given output stream.
+    // Only the entries that overlap the range are read.
+    public void write(long offset, long length, OutputStream outputStream) throws IOException {
+        long end = offset + length;
+        for (Segment segment : segments) {
+            long segmentEnd = segment.start + segment.length;
+            if (segmentEnd <= offset) {
+                continue;
+            }
+            if (segment.start >= end) {
+                break;
+            }
+
+            long from = Math.max(offset, segment.start);
+            long to = Math.min(end, segmentEnd);
+            segment.data.write(from - segment.start, to - from, outputStream);
+        }
+    }
+
+    // This method adds a header to the archive and returns the offset after it.
+    private long addBytes(long offset, byte[] bytes, MessageDigest digest) {
+        digest.update(bytes);
+        EntryData data = (from, length, outputStream) -> outputStream.write(bytes, (int) from, (int) length);
+        segments.add(new Segment(offset, bytes.length, data));
+        return offset + bytes.length;
+    }
+
+    // This method writes the fields that the local and central headers share, from the flags to the sizes.
+    private void putCommonFields(ByteBuffer header, Entry entry, int dosTime) {
+        header.putShort(UTF8_FLAG);
+        header.putShort(STORED);
+        header.putInt(dosTime);
+        header.putInt((int) entry.getCrc32());
+        header.putInt((int) entry.getSize()); // compressed size
+        header.putInt((int) entry.getSize()); // uncompressed size
+    }
+
+    private int centralDirectorySize(List<Entry> entries) {
+        long size = 0;
+        for (Entry entry : entries) {
+            size += CENTRAL_HEADER_SIZE + entry.getName().getBytes(StandardCharsets.UTF_8).length;
+        }
+        checkSize(size);
+        return Math.toIntExact(size);
+    }
+
+    private void checkSize(long size) {
+        if (size > MAX_SIZE) {
+            throw new IllegalArgumentException("An archive cannot be larger than " + MAX_SIZE + " bytes");
+        }
+    }
+
+    // This method converts a date to the MS-DOS format of ZIP headers: the time in the low 16 bits and the date in
+    // the high 16 bits, with a precision of 2 seconds. Dates before 1980 are written as 1980-01-01.
+    private static int toDosTime(LocalDateTime dateTime) {
+        if (dateTime == null || dateTime.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (dateTime.getYear() - 1980) << 25
+                | dateTime.getMonthValue() << 21
+                | dateTime.getDayOfMonth() << 16
+                | dateTime.getHour() << 11
+                | dateTime.getMinute() << 5
+                | dateTime.getSecond() >> 1;
+    }
+
+    private static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.api.comic_reader.utils;
+
+import java.awt.image.BufferedImage;
+
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class BlurHashUtil {
+    private static final String BASE83_CHARACTERS =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+
+    // The width the image is scaled down to before it is encoded, a placeholder has no detail to keep
+    private static final int SAMPLE_WIDTH = 32;
+
+    // The number of horizontal components, the vertical ones follow the aspect ratio of the image
+    private static final int COMPONENTS_X = 4;
+    private static final int MAX_COMPONENTS = 9;
+
+    /**
+     * This method encodes an image as a BlurHash, a string of about 30 characters that clients decode into a blurred
+     * placeholder while the image loads.
+     * The image is scaled down first, so the cost does not depend on its size.
+     * Tall images, such as long-strip pages, get more vertical components so the placeholder keeps their shading.
+     *
+     * @param image the image to encode
+     * @return the BlurHash of the image
+     * @see <a href="https://github.com/woltapp/blurhash/blob/master/Algorithm.md">the BlurHash algorithm</a>
+     */
+    public String encode(BufferedImage image) {
+        BufferedImage sample = (image.getWidth() > SAMPLE_WIDTH) ? ImageUtil.resizeToWidth(image, SAMPLE_WIDTH) : image;
+        int width = sample.getWidth();
+        int height = sample.getHeight();
+        int componentsX = COMPONENTS_X;
+        int componentsY =
+                (int) Math.max(1, Math.min(MAX_COMPONENTS, Math.round((double) COMPONENTS_X * height / width)));
+
+        int[] pixels = sample.getRGB(0, 0, width, height, null, 0, width);
+        double[][] factors = new double[componentsX * componentsY][];
+        for (int j = 0; j < componentsY; j++) {
+            for (int i = 0; i < componentsX; i++) {
+                factors[j * componentsX + i] = basisFactor(pixels, width, height, i, j);
+            }
+        }
+
+        StringBuilder hash = new StringBuilder();
+        encode83(hash, (componentsX - 1) + (componentsY - 1) * 9, 1);
+
+        double maximumValue = 1;
+        if (factors.length > 1) {
+            double actualMaximum = 0;
+            for (int k = 1; k < factors.length; k++) {
+                for (double component : factors[k]) {
+                    actualMaximum = Math.max(actualMaximum, Math.abs(component));
+                }
+            }
+            int quantisedMaximum = (int) Math.max(0, Math.min(82, Math.floor(actualMaximum * 166 - 0.5)));
+            maximumValue = (quantisedMaximum + 1) / 166.0;
+            encode83(hash, quantisedMaximum, 1);
+        } else {
+            encode83(hash, 0, 1);
+        }
+
+        encode83(hash, encodeDc(factors[0]), 4);
+        for (int k = 1; k < factors.length; k++) {
+            encode83(hash, encodeAc(factors[k], maximumValue), 2);
+        }
+        return hash.toString();
+    }
+
+    // This method computes the average color of the image weighted by the cosine basis of the given component.
+    private double[] basisFactor(int[] pixels, int width, int height, int componentX, int componentY) {
+        double r = 0;
+        double g = 0;
+        double b = 0;
+        for (int y = 0; y < height; y++) {
+            double basisY = Math.cos(Math.PI * componentY * y / height);
+            for (int x = 0; x < width; x++) {
+                double basis = Math.cos(Math.PI * componentX * x / width) * basisY;
+                int pixel = pixels[y * width + x];
+                r += basis * srgbToLinear((pixel >> 16) & 0xFF);
+                g += basis * srgbToLinear((pixel >> 8) & 0xFF);
+                b += basis * srgbToLinear(pixel & 0xFF);
+            }
+        }
+
+        double scale = ((componentX == 0 && componentY == 0) ? 1.0 : 2.0) / (width * height);
+        return new double[] {r * scale, g * scale, b * scale};
+    }
+
+    private int encodeDc(double[] color) {
+        return (linearToSrgb(color[0]) << 16) + (linearToSrgb(color[1]) << 8) + linearToSrgb(color[2]);
+    }
+
+    private int encodeAc(double[] color, double maximumValue) {
+        int r = quantiseAc(color[0] / maximumValue);
+        int g = quantiseAc(color[1] / maximumValue);
+        int b = quantiseAc(color[2] / maximumValue);
+        return r * 19 * 19 + g * 19 + b;
+    }
+
+    private int quantiseAc(double value) {
+        double signedRoot = Math.copySign(Math.sqrt(Math.abs(value)), value);
+        return (int) Math.max(0, Math.min(18, Math.floor(signedRoot * 9 + 9.5)));
+    }
+
+    private double srgbToLinear(int value) {
+        double v = value / 255.0;
+        return (v <= 0.04045) ? v / 12.92 : Math.pow((v + 0.055) / 1.055, 2.4);
+    }
+
+    private int linearToSrgb(double value) {
+        double v = Math.max(0, Math.min(1, value));
+        return (v <= 0.0031308)
+                ? (int) (v * 12.92 * 255 + 0.5)
+                : (int) ((1.055 * Math.pow(v, 1 / 2.4) - 0.055) * 255 + 0.5);
+    }
+
+    private void encode83(StringBuilder hash, int value, int length) {
+        for (int i = 1; i <= length; i++) {
+            int digit = (value / (int) Math.pow(83, length - i)) % 83;
+            hash.append(BASE83_CHARACTERS.charAt(digit));
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.api.comic_reader.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.api.comic_reader.repositories.projections.ImageMetadata;
+
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class ImageResponseUtil {
+    // The request attributes of Tomcat's sendfile support
+    private static final String SENDFILE_SUPPORTED_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+    // The client hints that select the width of the image, in order of preference
+    private static final String[] DPR_HEADERS = {"Sec-CH-DPR", "DPR"};
+    private static final String[] WIDTH_HEADERS = {"Sec-CH-Width", "Width"};
+
+    // The largest device pixel ratio that is honoured, so a bogus hint cannot select a needlessly large image
+    private static final double MAX_DPR = 4.0;
+
+    // The hints that the responses vary by, and that clients are asked to send with the next image requests
+    private static final String[] CLIENT_HINT_HEADERS = {"Sec-CH-DPR", "Sec-CH-Width", "DPR", "Width"};
+    private static final String ACCEPT_CH_HEADER = "Accept-CH";
+
+    /**
+     * This interface writes a range of the data of an image to an output stream.
+     */
+    @FunctionalInterface
+    public interface ImageDataWriter {
+        void write(long offset, long length, OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * This method resolves the width, in physical pixels, that the client wants an image to be displayed at.
+     * A width given in the URL is in CSS pixels and is multiplied by the device pixel ratio hint. Without it, the
+     * width hint of the client is used, which is already in physical pixels.
+     *
+     * @param request the request
+     * @param width the width given in the URL, or null
+     * @return the requested width, or null if the client did not ask for a width
+     */
+    public Integer resolveRequestedWidth(HttpServletRequest request, Integer width) {
+        if (width != null && width > 0) {
+            Double dpr = parseHint(request, DPR_HEADERS);
+            double ratio = (dpr == null) ? 1.0 : Math.max(1.0, Math.min(MAX_DPR, dpr));
+            return (int) Math.ceil(width * ratio);
+        }
+
+        Double widthHint = parseHint(request, WIDTH_HEADERS);
+        return (widthHint == null || widthHint <= 0) ? null : (int) Math.ceil(widthHint);
+    }
+
+    /**
+     * This method builds the response of an image request.
+     * The image data is streamed to the client, it is never held in memory as a whole.
+     * It answers a matching If-None-Match with 304 Not Modified, without reading the image data.
+     * It answers a single byte range with 206 Partial Content, and an unsatisfiable range with 416.
+     * Multiple or malformed ranges are ignored and the whole image is sent, as allowed by RFC 9110.
+     * If the image is a local file and the container supports it, the file is sent with sendfile, so its bytes never
+     * enter the JVM.
+     *
+     * @param metadata the hash, content type and size of the image
+     * @param request the request
+     * @param cacheControl the Cache-Control header of the response
+     * @param localFile the local file of the image, or null if it is not stored on the local filesystem
+     * @param writer the writer of the image data, used when the file cannot be sent with sendfile
+     * @return the response to return from the controller
+     */
+    public ResponseEntity<StreamingResponseBody> toResponse(
+            ImageMetadata metadata,
+            HttpServletRequest request,
+            CacheControl cacheControl,
+            Path localFile,
+            ImageDataWriter writer) {
+        return buildResponse(metadata, request, cacheControl, localFile, writer, ImageResponseUtil::addClientHints);
+    }
+
+    /**
+     * This method builds the response of a download, such as a CBZ archive, that the client saves as a file.
+     * It supports conditional and range requests like toResponse, so interrupted downloads can be resumed.
+     *
+     * @param metadata the hash, content type and size of the download
+     * @param fileName the name under which the client saves the download
+     * @param request the request
+     * @param cacheControl the Cache-Control header of the response
+     * @param writer the writer of the download data
+     * @return the response to return from the controller
+     */
+    public ResponseEntity<StreamingResponseBody> toDownloadResponse(
+            ImageMetadata metadata,
+            String fileName,
+            HttpServletRequest request,
+            CacheControl cacheControl,
+            ImageDataWriter writer) {
+        ContentDisposition contentDisposition =
+                ContentDisposition.attachment().filename(fileName).build();
+        return buildResponse(
+                metadata,
+                request,
+                cacheControl,
+                null,
+                writer,
+                headers -> headers.setContentDisposition(contentDisposition));
+    }
+
+    /**
+     * This method builds the response of a bundle of images, such as the pages of a chapter, that the client reads
+     * part by part.
+     * It supports conditional and range requests like toResponse, so an interrupted bundle can be resumed.
+     *
+     * @param metadata the hash, content type and size of the bundle
+     * @param request the request
+     * @param cacheControl the Cache-Control header of the response
+     * @param writer the writer of the bundle data
+     * @return the response to return from the controller
+     */
+    public ResponseEntity<StreamingResponseBody> toBundleResponse(
+            ImageMetadata metadata, HttpServletRequest request, CacheControl cacheControl, ImageDataWriter writer) {
+        return buildResponse(metadata, request, cacheControl, null, writer, headers -> {});
+    }
+
+    private ResponseEntity<StreamingResponseBody> buildResponse(
+            ImageMetadata metadata,
+            HttpServletRequest request,
+            CacheControl cacheControl,
+            Path localFile,
+            ImageDataWriter writer,
+            Consumer<HttpHeaders> extraHeaders) {
+        String eTag = "\"" + metadata.getContentHash() + "\"";
+        long size = metadata.getByteSize();
+        MediaType contentType = MediaType.parseMediaType(metadata.getContentType());
+
+        // The client already has this version of the image
+        if (matchesETag(request.getHeader(HttpHeaders.IF_NONE_MATCH), eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(eTag)
+                    .cacheControl(cacheControl)
+                    .headers(extraHeaders)
+                    .build();
+        }
+
+        // A range is only served if the client's copy (If-Range) is still the current version
+        HttpRange range = parseSingleRange(request.getHeader(HttpHeaders.RANGE));
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(eTag))) {
+            long start;
+            long end;
+            try {
+                start = range.getRangeStart(size);
+                end = range.getRangeEnd(size);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                        .build();
+            }
+
+            long length = end - start + 1;
+            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .eTag(eTag)
+                    .cacheControl(cacheControl)
+                    .headers(extraHeaders)
+                    .contentType(contentType)
+                    .contentLength(length)
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size)
+                    .body(toBody(request, localFile, start, length, writer));
+        }
+
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(cacheControl)
+                .headers(extraHeaders)
+                .contentType(contentType)
+                .contentLength(size)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .body(toBody(request, localFile, 0, size, writer));
+    }
+
+    // This method adds the headers that tell caches the response depends on the client hints, and ask the client to
+    // send them.
+    private void addClientHints(HttpHeaders headers) {
+        headers.setVary(List.of(CLIENT_HINT_HEADERS));
+        headers.set(ACCEPT_CH_HEADER, String.join(", ", CLIENT_HINT_HEADERS));
+    }
+
+    // This method returns the body that writes a range of the image.
+    // If the container can send the local file itself, it returns no body and asks the container to send the range.
+    private StreamingResponseBody toBody(
+            HttpServletRequest request, Path localFile, long offset, long length, ImageDataWriter writer) {
+        if (localFile != null
+                && !"HEAD".equals(request.getMethod())
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTRIBUTE))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, localFile.toString());
+            request.setAttribute(SENDFILE_START_ATTRIBUTE, offset);
+            request.setAttribute(SENDFILE_END_ATTRIBUTE, offset + length);
+            return null;
+        }
+        return outputStream -> writer.write(offset, length, outputStream);
+    }
+
+    // This method parses the first client hint of the given headers that the request contains.
+    // It returns null if the request contains none of them or if the hint is not a number.
+    private Double parseHint(HttpServletRequest request, String[] headerNames) {
+        for (String headerName : headerNames) {
+            String value = request.getHeader(headerName);
+            if (value != null) {
+                try {
+                    return Double.parseDouble(value.trim());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    // This method checks whether an If-None-Match header matches the given ETag, using the weak comparison.
+    private boolean matchesETag(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // This method parses a Range header that contains exactly one byte range.
+    // It returns null if there is no header, if it is malformed or if it contains several ranges.
+    private HttpRange parseSingleRange(String rangeHeader) {
+        if (rangeHeader == null) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return (ranges.size() == 1) ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.api.comic_reader.utils;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.springframework.http.MediaType;
+
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class ImageUtil {
+
+    /**
+     * This method computes the SHA-256 hash of the given bytes.
+     * It is used as the content hash of an image and as its strong ETag.
+     *
+     * @param data the bytes to hash
+     * @return the hash as a lowercase hexadecimal string of 64 characters
+     */
+    public String sha256Hex(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * This method detects the content type of an image from its first bytes.
+     * It recognizes JPEG, PNG, GIF and WebP images.
+     * If the format is not recognized, it returns "application/octet-stream".
+     *
+     * @param data the image bytes, or at least their first 12 bytes
+     * @return the content type of the image
+     */
+    public String detectContentType(byte[] data) {
+        if (startsWith(data, 0, new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF})) {
+            return MediaType.IMAGE_JPEG_VALUE;
+        }
+        if (startsWith(data, 0, new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'})) {
+            return MediaType.IMAGE_PNG_VALUE;
+        }
+        if (startsWith(data, 0, ascii("GIF87a")) || startsWith(data, 0, ascii("GIF89a"))) {
+            return MediaType.IMAGE_GIF_VALUE;
+        }
+        if (startsWith(data, 0, ascii("RIFF")) && startsWith(data, 8, ascii("WEBP"))) {
+            return "image/webp";
+        }
+        return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+    }
+
+    /**
+     * This method reads the width and height of an image.
+     * Only the header of the image is decoded, not its pixels.
+     * If the format is not supported by ImageIO or the image is corrupted, it returns null.
+     *
+     * @param data the image bytes
+     * @return the dimensions of the image or null if they cannot be read
+     */
+    public Dimension readDimensions(byte[] data) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            return readDimensions(input);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * This method reads the width and height of an image file.
+     * Only the header of the image is read from the file, not its pixels.
+     * If the format is not supported by ImageIO or the image is corrupted, it returns null.
+     *
+     * @param file the image file
+     * @return the dimensions of the image or null if they cannot be read
+     */
+    public Dimension readDimensions(Path file) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            return readDimensions(input);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * This method decodes an image file, skipping pixels so the decoded image is not much wider than needed.
+     * Only every n-th column and row is decoded, with n the largest factor that keeps the image at least minWidth
+     * wide, so a large page never takes its full resolution in memory.
+     * If the format is not supported by ImageIO, it returns null.
+     *
+     * @param file the image file
+     * @param minWidth the smallest width of the decoded image, unless the image is narrower
+     * @return the decoded image or null if it cannot be decoded
+     * @throws IOException if the file cannot be read or the image is corrupted
+     */
+    public BufferedImage readSubsampled(Path file, int minWidth) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            return readSubsampled(input, minWidth);
+        }
+    }
+
+    /**
+     * This method decodes an image, skipping pixels so the decoded image is not much wider than needed.
+     * Only every n-th column and row is decoded, with n the largest factor that keeps the image at least minWidth
+     * wide.
+     * If the format is not supported by ImageIO, it returns null.
+     *
+     * @param data the image bytes
+     * @param minWidth the smallest width of the decoded image, unless the image is narrower
+     * @return the decoded image or null if it cannot be decoded
+     * @throws IOException if the image is corrupted
+     */
+    public BufferedImage readSubsampled(byte[] data, int minWidth) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            return readSubsampled(input, minWidth);
+        }
+    }
+
+    /**
+     * This method checks whether a content type returned by detectContentType is an image format.
+     *
+     * @param contentType the detected content type
+     * @return true if the content type is a recognized image format
+     */
+    public boolean isImage(String contentType) {
+        return !MediaType.APPLICATION_OCTET_STREAM_VALUE.equals(contentType);
+    }
+
+    private Dimension readDimensions(ImageInputStream input) throws IOException {
+        if (input == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            return new Dimension(reader.getWidth(0), reader.getHeight(0));
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private BufferedImage readSubsampled(ImageInputStream input, int minWidth) throws IOException {
+        if (input == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            int factor = Math.max(1, reader.getWidth(0) / Math.max(1, minWidth));
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(factor, factor, 0, 0);
+            return reader.read(0, param);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * This method scales an image down to the given width, keeping its aspect ratio.
+     * The image is halved repeatedly before the last step, so large reductions stay sharp with bilinear filtering.
+     *
+     * @param image the image to scale, wider than the given width
+     * @param targetWidth the width of the scaled image
+     * @return the scaled image
+     */
+    public BufferedImage resizeToWidth(BufferedImage image, int targetWidth) {
+        int targetHeight = Math.max(1, (int) Math.round((double) image.getHeight() * targetWidth / image.getWidth()));
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = (width == targetWidth) ? targetHeight : Math.max(targetHeight, height / 2);
+
+            BufferedImage scaled = new BufferedImage(width, height, type);
+            Graphics2D graphics = scaled.createGraphics();
+            try {
+                graphics.setRenderingHint(
+                        RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = scaled;
+        } while (width > targetWidth);
+
+        return current;
+    }
+
+    /**
+     * This method encodes an image as JPEG, or as PNG if it has an alpha channel.
+     *
+     * @param image the image to encode
+     * @param jpegQuality the JPEG quality, between 0 and 1
+     * @return the encoded image
+     * @throws IOException if the image cannot be encoded
+     */
+    public byte[] encode(BufferedImage image, float jpegQuality) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        if (image.getColorModel().hasAlpha()) {
+            ImageIO.write(image, "png", output);
+            return output.toByteArray();
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream imageOutput = ImageIO.createImageOutputStream(output)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(imageOutput);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+
+    private boolean startsWith(byte[] data, int offset, byte[] prefix) {
+        if (data == null || data.length < offset + prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,83 @@
+package com.api.comic_reader.utils;
+
+import java.util.Comparator;
+
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class NaturalSortUtil {
+
+    /**
+     * This comparator sorts strings in natural order, see compare.
+     */
+    public final Comparator<String> NATURAL_ORDER = NaturalSortUtil::compare;
+
+    /**
+     * This method compares two strings in natural order: runs of digits are compared by their numeric value and the
+     * other characters are compared without case, so "page2.jpg" comes before "page10.jpg".
+     * Strings that only differ by case or leading zeros are ordered by their plain string order.
+     *
+     * @param left the first string
+     * @param right the second string
+     * @return a negative number, zero or a positive number as the first string is before, equal to or after the second
+     */
+    public int compare(String left, String right) {
+        int leftIndex = 0;
+        int rightIndex = 0;
+        while (leftIndex < left.length() && rightIndex < right.length()) {
+            char leftChar = left.charAt(leftIndex);
+            char rightChar = right.charAt(rightIndex);
+
+            if (Character.isDigit(leftChar) && Character.isDigit(rightChar)) {
+                int leftEnd = digitsEnd(left, leftIndex);
+                int rightEnd = digitsEnd(right, rightIndex);
+                int result = compareNumbers(left.substring(leftIndex, leftEnd), right.substring(rightIndex, rightEnd));
+                if (result != 0) {
+                    return result;
+                }
+                leftIndex = leftEnd;
+                rightIndex = rightEnd;
+                continue;
+            }
+
+            int result = Character.compare(Character.toLowerCase(leftChar), Character.toLowerCase(rightChar));
+            if (result != 0) {
+                return result;
+            }
+            leftIndex++;
+            rightIndex++;
+        }
+
+        if (leftIndex < left.length() || rightIndex < right.length()) {
+            return (leftIndex < left.length()) ? 1 : -1;
+        }
+        return left.compareTo(right);
+    }
+
+    // This method returns the index after the run of digits that starts at the given index.
+    private int digitsEnd(String value, int start) {
+        int end = start;
+        while (end < value.length() && Character.isDigit(value.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    // This method compares two runs of digits by their numeric value, whatever their length.
+    private int compareNumbers(String left, String right) {
+        String leftDigits = stripLeadingZeros(left);
+        String rightDigits = stripLeadingZeros(right);
+        if (leftDigits.length() != rightDigits.length()) {
+            return Integer.compare(leftDigits.length(), rightDigits.length());
+        }
+        return leftDigits.compareTo(rightDigits);
+    }
+
+    private String stripLeadingZeros(String digits) {
+        int start = 0;
+        while (start < digits.length() - 1 && digits.charAt(start) == '0') {
+            start++;
+        }
+        return digits.substring(start);
+    }
+}
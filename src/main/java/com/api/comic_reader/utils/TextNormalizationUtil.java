@@ -0,0 +1,62 @@
+package com.api.comic_reader.utils;
+
+import java.text.Normalizer;
+import java.util.List;
+
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class TextNormalizationUtil {
+
+    /**
+     * This method normalizes a text for accent-insensitive search.
+     * The diacritics are removed, including the Vietnamese tone marks and the horn of ơ and ư, and đ is folded to d,
+     * so "Thám Tử" and "tham tu" have the same normalized form. The text is lower-cased and every run of characters
+     * that are not letters or digits is replaced by a single space.
+     * Normalizing a normalized text returns it unchanged.
+     *
+     * @param text the text to normalize, may be null
+     * @return the normalized text, empty if the text is null
+     */
+    public String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+
+        // The decomposed form puts each diacritic in its own combining character, which is then skipped
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+
+            c = Character.toLowerCase(c);
+            if (c == 'đ') {
+                c = 'd';
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && !normalized.isEmpty()) {
+                    normalized.append(' ');
+                }
+                normalized.append(c);
+                pendingSpace = false;
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * This method splits a normalized text into its tokens.
+     *
+     * @param normalizedText a text returned by normalize
+     * @return the tokens of the text, empty if the text is empty
+     */
+    public List<String> tokenize(String normalizedText) {
+        return normalizedText.isEmpty() ? List.of() : List.of(normalizedText.split(" "));
+    }
+}
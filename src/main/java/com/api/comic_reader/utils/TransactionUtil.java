@@ -0,0 +1,31 @@
+package com.api.comic_reader.utils;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class TransactionUtil {
+
+    /**
+     * This method runs an action once the current transaction commits, or right away if there is no transaction.
+     * It is used to update in-memory state only once the change it mirrors is in the database, so a rollback leaves
+     * the state as is.
+     *
+     * @param action the action to run
+     */
+    public void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
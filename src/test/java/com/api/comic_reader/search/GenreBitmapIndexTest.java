@@ -0,0 +1,100 @@
+package com.api.comic_reader.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class GenreBitmapIndexTest {
+    private static final long ACTION = 1L;
+    private static final long ROMANCE = 2L;
+    private static final long COMEDY = 3L;
+
+    private GenreBitmapIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new GenreBitmapIndex();
+        index.putComic(1L, true, false);
+        index.putComic(2L, false, false);
+        index.putComic(3L, false, false);
+        index.putComic(4L, true, false);
+        index.putComic(5L, false, true);
+
+        index.addGenre(1L, ACTION);
+        index.addGenre(2L, ACTION);
+        index.addGenre(2L, ROMANCE);
+        index.addGenre(3L, ACTION);
+        index.addGenre(3L, COMEDY);
+        index.addGenre(4L, ROMANCE);
+        index.addGenre(5L, COMEDY);
+    }
+
+    @Test
+    void leavesOutDeletedComics() {
+        assertEquals(List.of(1L, 2L, 3L, 4L), ids(index.filter(null, null, null, null)));
+    }
+
+    @Test
+    void requiresAllGenres() {
+        assertEquals(List.of(2L), ids(index.filter(List.of(ACTION, ROMANCE), null, null, null)));
+        assertTrue(index.filter(List.of(ACTION, 99L), null, null, null).isEmpty());
+    }
+
+    @Test
+    void requiresAnyGenre() {
+        assertEquals(List.of(2L, 3L, 4L), ids(index.filter(null, List.of(ROMANCE, COMEDY), null, null)));
+        assertTrue(index.filter(null, List.of(99L), null, null).isEmpty());
+    }
+
+    @Test
+    void excludesGenres() {
+        assertEquals(List.of(1L, 2L, 4L), ids(index.filter(null, null, List.of(COMEDY), null)));
+        assertEquals(List.of(1L, 2L, 3L, 4L), ids(index.filter(null, null, List.of(99L), null)));
+    }
+
+    @Test
+    void combinesFiltersWithTheFinishedStatus() {
+        assertEquals(List.of(2L), ids(index.filter(List.of(ACTION), List.of(ROMANCE, COMEDY), List.of(COMEDY), null)));
+        assertEquals(List.of(1L, 4L), ids(index.filter(null, null, null, true)));
+        assertEquals(List.of(2L, 3L), ids(index.filter(List.of(ACTION), null, null, false)));
+    }
+
+    @Test
+    void seesStatusChanges() {
+        index.putComic(2L, true, false);
+        index.putComic(3L, false, true);
+        assertEquals(List.of(1L, 2L), ids(index.filter(List.of(ACTION), null, null, true)));
+        assertEquals(List.of(1L, 2L), ids(index.filter(List.of(ACTION), null, null, null)));
+    }
+
+    @Test
+    void countsTheComicsOfAResultPerGenreAndStatus() {
+        GenreBitmapIndex.Facets all = index.facets(index.filter(null, null, null, null));
+        assertEquals(Map.of(ACTION, 3, ROMANCE, 2, COMEDY, 1), all.getGenreCounts());
+        assertEquals(2, all.getFinishedCount());
+        assertEquals(2, all.getNotFinishedCount());
+
+        GenreBitmapIndex.Facets romance = index.facets(index.filter(List.of(ROMANCE), null, null, null));
+        assertEquals(Map.of(ACTION, 1, ROMANCE, 2), romance.getGenreCounts());
+        assertEquals(1, romance.getFinishedCount());
+        assertEquals(1, romance.getNotFinishedCount());
+    }
+
+    @Test
+    void pagesAResultInIdOrder() {
+        BitSet result = index.filter(null, null, null, null);
+        assertEquals(List.of(1L, 2L), GenreBitmapIndex.page(result, 0L, 2));
+        assertEquals(List.of(3L, 4L), GenreBitmapIndex.page(result, 2L, 2));
+        assertTrue(GenreBitmapIndex.page(result, 4L, 2).isEmpty());
+    }
+
+    private static List<Long> ids(BitSet result) {
+        return result.stream().mapToObj(bit -> (long) bit).toList();
+    }
+}
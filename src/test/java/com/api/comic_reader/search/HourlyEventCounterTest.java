@@ -0,0 +1,74 @@
+package com.api.comic_reader.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class HourlyEventCounterTest {
+
+    @Test
+    void countsTheEventsOfEachHour() {
+        HourlyEventCounter counter = new HourlyEventCounter(24);
+        counter.record(1L, 100L);
+        counter.record(1L, 100L);
+        counter.record(1L, 101L);
+        counter.record(2L, 101L);
+
+        Map<Long, Double> counts = counter.decayedCounts(101L, 24, Double.POSITIVE_INFINITY);
+        assertEquals(3.0, counts.get(1L));
+        assertEquals(1.0, counts.get(2L));
+    }
+
+    @Test
+    void halvesACountEveryHalfLife() {
+        HourlyEventCounter counter = new HourlyEventCounter(24);
+        for (int i = 0; i < 8; i++) {
+            counter.record(1L, 100L);
+        }
+        counter.record(1L, 104L);
+
+        assertEquals(3.0, counter.decayedCounts(104L, 24, 2.0).get(1L), 1e-9);
+        assertEquals(1.5, counter.decayedCounts(106L, 24, 2.0).get(1L), 1e-9);
+    }
+
+    @Test
+    void leavesOutTheHoursBeforeTheWindow() {
+        HourlyEventCounter counter = new HourlyEventCounter(24);
+        counter.record(1L, 100L);
+        counter.record(1L, 105L);
+
+        assertEquals(
+                1.0, counter.decayedCounts(105L, 3, Double.POSITIVE_INFINITY).get(1L));
+        assertTrue(counter.decayedCounts(110L, 3, Double.POSITIVE_INFINITY).isEmpty());
+    }
+
+    @Test
+    void reusesTheBucketOfAnHourThatLeftTheRetentionPeriod() {
+        HourlyEventCounter counter = new HourlyEventCounter(3);
+        for (int i = 0; i < 5; i++) {
+            counter.record(1L, 0L);
+        }
+
+        // Hour 3 falls in the bucket of hour 0, whose count is dropped
+        counter.record(1L, 3L);
+        assertEquals(1.0, counter.decayedCounts(3L, 3, Double.POSITIVE_INFINITY).get(1L));
+
+        // An event of an hour whose bucket was reused is too old to be counted
+        counter.record(1L, 0L);
+        assertEquals(1.0, counter.decayedCounts(3L, 3, Double.POSITIVE_INFINITY).get(1L));
+    }
+
+    @Test
+    void forgetsTheKeysWithoutRecentEvents() {
+        HourlyEventCounter counter = new HourlyEventCounter(3);
+        counter.record(1L, 0L);
+        counter.record(2L, 2L);
+
+        counter.removeIdle(3L);
+        assertEquals(1, counter.size());
+        assertEquals(Map.of(2L, 1.0), counter.decayedCounts(3L, 3, Double.POSITIVE_INFINITY));
+    }
+}
@@ -0,0 +1,84 @@
+package com.api.comic_reader.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class RatingLeaderboardTest {
+
+    @Test
+    void ranksByBayesianAverage() {
+        RatingLeaderboard leaderboard = new RatingLeaderboard(3.0, 10.0);
+        leaderboard.put(1L, 1L, 5L);
+        leaderboard.put(2L, 100L, 450L);
+        leaderboard.put(3L, 20L, 40L);
+
+        List<RatingLeaderboard.Entry> page = leaderboard.page(all(3), null, 0L, 10);
+        assertEquals(List.of(2L, 1L, 3L), ids(page));
+        assertEquals(5.0, page.get(1).getAverageScore());
+    }
+
+    @Test
+    void appliesNewAndChangedRatings() {
+        RatingLeaderboard leaderboard = new RatingLeaderboard(3.0, 1.0);
+        leaderboard.put(1L, 2L, 8L);
+        leaderboard.put(2L, 2L, 6L);
+
+        leaderboard.rate(2L, null, 5L);
+        leaderboard.rate(2L, 1L, 5L);
+        leaderboard.rate(3L, null, 4L);
+
+        List<RatingLeaderboard.Entry> page = leaderboard.page(all(3), null, 0L, 10);
+        assertEquals(List.of(2L, 1L, 3L), ids(page));
+        assertEquals(3L, page.get(0).getRatingCount());
+        assertEquals(15L, page.get(0).getRatingSum());
+    }
+
+    @Test
+    void pagesAfterAPosition() {
+        RatingLeaderboard leaderboard = new RatingLeaderboard(3.0, 1.0);
+        for (long comicId = 1; comicId <= 5; comicId++) {
+            leaderboard.put(comicId, 1L, 5L);
+        }
+
+        List<RatingLeaderboard.Entry> first = leaderboard.page(all(5), null, 0L, 2);
+        assertEquals(List.of(1L, 2L), ids(first));
+        RatingLeaderboard.Entry last = first.get(1);
+        assertEquals(List.of(3L, 4L), ids(leaderboard.page(all(5), last.getScore(), last.getComicId(), 2)));
+    }
+
+    @Test
+    void pagesASubsetThatRanksLow() {
+        RatingLeaderboard leaderboard = new RatingLeaderboard(3.0, 1.0);
+        for (long comicId = 1; comicId <= 100; comicId++) {
+            leaderboard.put(comicId, 1L, (comicId <= 90) ? 5L : 1L);
+        }
+
+        // The subset ranks below 90 other comics, so the page is selected from the subset
+        BitSet subset = new BitSet();
+        subset.set(50);
+        subset.set(95);
+        subset.set(97);
+        subset.set(99);
+
+        List<RatingLeaderboard.Entry> first = leaderboard.page(subset, null, 0L, 2);
+        assertEquals(List.of(50L, 95L), ids(first));
+        RatingLeaderboard.Entry last = first.get(1);
+        assertEquals(List.of(97L, 99L), ids(leaderboard.page(subset, last.getScore(), last.getComicId(), 2)));
+        assertTrue(leaderboard.page(subset, 0.0, 99L, 2).isEmpty());
+    }
+
+    private static BitSet all(int comicCount) {
+        BitSet comicIds = new BitSet();
+        comicIds.set(1, comicCount + 1);
+        return comicIds;
+    }
+
+    private static List<Long> ids(List<RatingLeaderboard.Entry> entries) {
+        return entries.stream().map(RatingLeaderboard.Entry::getComicId).toList();
+    }
+}
@@ -0,0 +1,89 @@
+package com.api.comic_reader.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class SuggestionTrieTest {
+
+    @Test
+    void splitsAnEdgeWhereTwoTermsDiverge() {
+        SuggestionTrie trie = new SuggestionTrie(10);
+        trie.put(1L, "Naruto", 100L, Set.of("naruto"));
+        trie.put(2L, "Narnia", 50L, Set.of("narnia"));
+
+        assertEquals(List.of(1L, 2L), keys(trie.suggest("n")));
+        assertEquals(List.of(1L, 2L), keys(trie.suggest("nar")));
+        assertEquals(List.of(1L), keys(trie.suggest("naru")));
+        assertEquals(List.of(2L), keys(trie.suggest("narn")));
+        assertEquals(List.of(1L), keys(trie.suggest("naruto")));
+        assertTrue(trie.suggest("narutos").isEmpty());
+        assertTrue(trie.suggest("b").isEmpty());
+    }
+
+    @Test
+    void suggestsATermThatIsThePrefixOfAnother() {
+        SuggestionTrie trie = new SuggestionTrie(10);
+        trie.put(1L, "One Piece", 10L, Set.of("one piece", "one", "piece"));
+        trie.put(2L, "Onee-san", 20L, Set.of("onee san", "onee", "san"));
+
+        assertEquals(List.of(2L, 1L), keys(trie.suggest("one")));
+        assertEquals(List.of(1L), keys(trie.suggest("one ")));
+        assertEquals(List.of(1L), keys(trie.suggest("pie")));
+    }
+
+    @Test
+    void deletesATermAndPrunesItsNodes() {
+        SuggestionTrie trie = new SuggestionTrie(10);
+        trie.put(1L, "Naruto", 100L, Set.of("naruto"));
+        trie.put(2L, "Narnia", 50L, Set.of("narnia"));
+
+        trie.remove(1L);
+        assertNull(trie.get(1L));
+        assertTrue(trie.suggest("naru").isEmpty());
+        assertEquals(List.of(2L), keys(trie.suggest("nar")));
+
+        trie.remove(2L);
+        assertTrue(trie.suggest("n").isEmpty());
+
+        trie.put(3L, "Nana", 5L, Set.of("nana"));
+        assertEquals(List.of(3L), keys(trie.suggest("na")));
+    }
+
+    @Test
+    void replacesTheTermsOfAnEntry() {
+        SuggestionTrie trie = new SuggestionTrie(10);
+        trie.put(1L, "Bleach", 10L, Set.of("bleach"));
+        trie.put(1L, "Bleach TYBW", 30L, Set.of("bleach tybw", "tybw"));
+
+        assertEquals(List.of(1L), keys(trie.suggest("bleach")));
+        assertEquals(30L, trie.suggest("bleach").get(0).getRank());
+        assertEquals(List.of(1L), keys(trie.suggest("ty")));
+        assertEquals("Bleach TYBW", trie.get(1L).getLabel());
+    }
+
+    @Test
+    void keepsOnlyTheBestRankedEntriesOfEachNode() {
+        SuggestionTrie trie = new SuggestionTrie(2);
+        trie.put(1L, "Dragon Ball", 10L, Set.of("dragon ball"));
+        trie.put(2L, "Dragon Quest", 30L, Set.of("dragon quest"));
+        trie.put(3L, "Dragon Ball Z", 20L, Set.of("dragon ball z"));
+        trie.put(4L, "Dr. Stone", 20L, Set.of("dr stone"));
+
+        assertEquals(List.of(2L, 3L), keys(trie.suggest("dr")));
+        assertEquals(List.of(3L, 1L), keys(trie.suggest("dragon b")));
+
+        // Removing an entry brings back the next best one
+        trie.remove(3L);
+        assertEquals(List.of(2L, 4L), keys(trie.suggest("dr")));
+    }
+
+    private static List<Long> keys(List<SuggestionTrie.Suggestion> suggestions) {
+        return suggestions.stream().map(SuggestionTrie.Suggestion::getKey).toList();
+    }
+}
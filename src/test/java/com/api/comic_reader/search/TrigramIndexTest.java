@@ -0,0 +1,78 @@
+package com.api.comic_reader.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TrigramIndexTest {
+    // The weights of ComicSearchService: name, author, description, with the name and the author tokenized
+    private TrigramIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new TrigramIndex(2, 3.0, 2.0, 1.0);
+        index.put(1L, "Naruto", "Masashi Kishimoto", "A young ninja");
+        index.put(2L, "Boruto", "Ukyo Kodachi", "The son of Naruto");
+        index.put(3L, "One Piece", "Eiichiro Oda", "Pirates");
+        index.put(4L, "One Punch Man", "ONE", "A hero");
+        index.put(5L, "Thám Tử Lừng Danh Conan", "Gosho Aoyama", "Detective");
+    }
+
+    @Test
+    void ranksNameMatchesAboveDescriptionMatches() {
+        assertEquals(List.of(1L, 2L), keys(index.search("naruto", 0.3, 10)));
+    }
+
+    @Test
+    void ranksTokenPrefixesAboveSubstrings() {
+        assertEquals(List.of(1L, 2L), keys(index.search("nar", 0.3, 10)));
+    }
+
+    @Test
+    void matchesTyposAndRanksTheClosestFirst() {
+        List<Long> onePiece = keys(index.search("one pice", 0.3, 10));
+        assertEquals(3L, onePiece.get(0));
+
+        // A transposition changes most trigrams of a short token, so only the token index finds it
+        assertEquals(List.of(1L), keys(index.search("nartuo", 0.3, 10)));
+    }
+
+    @Test
+    void requiresShortTokensToMatchExactly() {
+        assertTrue(index.search("oad", 0.3, 10).isEmpty());
+
+        // "Kodachi" contains the query, but "Oda" is the query
+        assertEquals(List.of(3L, 2L), keys(index.search("oda", 0.3, 10)));
+    }
+
+    @Test
+    void ignoresCaseAndDiacritics() {
+        assertEquals(List.of(5L), keys(index.search("THAM TU", 0.3, 10)));
+    }
+
+    @Test
+    void forgetsRemovedDocumentsAndReusesTheirIds() {
+        index.remove(1L);
+        assertEquals(List.of(2L), keys(index.search("naruto", 0.3, 10)));
+
+        index.put(6L, "Naruto Shippuden", "Masashi Kishimoto", "A ninja again");
+        index.put(3L, "One Piece Film Red", "Eiichiro Oda", "Pirates");
+        assertEquals(5, index.size());
+        assertEquals(List.of(6L, 2L), keys(index.search("naruto", 0.3, 10)));
+        assertEquals(List.of(3L), keys(index.search("film red", 0.3, 10)));
+    }
+
+    @Test
+    void returnsAtMostLimitMatches() {
+        assertEquals(1, index.search("one", 0.3, 1).size());
+        assertTrue(index.search("  ", 0.3, 10).isEmpty());
+    }
+
+    private static List<Long> keys(List<TrigramIndex.Match> matches) {
+        return matches.stream().map(TrigramIndex.Match::getKey).toList();
+    }
+}